@@ -0,0 +1,156 @@
+import java.io.Closeable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A MoveProvider that runs a Player on a background thread of its own.
+ * 
+ * A request copies the moves of the game, which is all it does on the caller's
+ * thread, and the thinker thread replays them into a game of its own before the
+ * player searches it. Only one search runs at a time: a new request, a cancel, or
+ * cancelling a pending move interrupts the one under way, and the Solver and the
+ * Monte Carlo search both stop within a few hundred positions or playouts when
+ * their thread is interrupted. A search that was stopped never completes its
+ * future with a move.
+ * 
+ * Pondering runs the player's ponder on the thinker thread the same way, and is
+ * interrupted by the next request.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class AsyncPlayer implements MoveProvider, Closeable {
+    private final Player player;
+    private final ExecutorService thinker;
+    // Used only on the thinker thread: the position being searched.
+    private TicTacToeGame position;
+    // The search or pondering under way or queued, and the move it is to give; guarded by this.
+    private Future<?> current;
+    private CompletableFuture<Integer> pending;
+    
+    /**
+     * Creates an asynchronous player that lets the given player think on a background thread.
+     */
+    public AsyncPlayer(Player player) {
+        this.player = player;
+        thinker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AsyncPlayer-thinker");
+            thread.setDaemon(true);
+            // Where the system honours priorities, the event dispatch thread comes first.
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+    
+    @Override
+    public synchronized CompletableFuture<Integer> requestMove(TicTacToeGame game) {
+        if (game.isGameOver())
+            throw new IllegalArgumentException("The game is over");
+        stop();
+        String starter = startingPlayer(game);
+        int[] moves = movesOf(game);
+        int size = game.getSize();
+        int winLength = game.getWinLength();
+        CompletableFuture<Integer> move = new CompletableFuture<>();
+        Future<?> search = thinker.submit(() -> {
+            if (move.isDone())
+                return;
+            try {
+                int chosen = player.chooseMove(replay(size, winLength, starter, moves));
+                if (Thread.interrupted())
+                    move.cancel(false);
+                else
+                    move.complete(chosen);
+            } catch (RuntimeException e) {
+                move.completeExceptionally(e);
+            }
+        });
+        current = search;
+        pending = move;
+        move.whenComplete((chosen, failure) -> {
+            if (failure instanceof CancellationException)
+                search.cancel(true);
+        });
+        return move;
+    }
+    
+    @Override
+    public synchronized void ponder(TicTacToeGame game, long millis) {
+        if (game.isGameOver())
+            return;
+        stop();
+        String starter = startingPlayer(game);
+        int[] moves = movesOf(game);
+        int size = game.getSize();
+        int winLength = game.getWinLength();
+        current = thinker.submit(() -> player.ponder(replay(size, winLength, starter, moves), millis));
+    }
+    
+    @Override
+    public synchronized void cancel() {
+        stop();
+    }
+    
+    /**
+     * Stops the search under way, if any; the thinker thread ends once it has.
+     */
+    @Override
+    public void close() {
+        cancel();
+        thinker.shutdown();
+    }
+    
+    /**
+     * Interrupts the current search or pondering, or drops it if it has not started, and
+     * cancels the move it was to give.
+     */
+    private void stop() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+    
+    /**
+     * Returns the player who made the first move of the game, or who is to move if none has.
+     */
+    private static String startingPlayer(TicTacToeGame game) {
+        if (game.getMoveCount() == 0)
+            return game.getCurrentPlayer();
+        int first = game.getMove(0);
+        return game.getCell(first / game.getSize(), first % game.getSize());
+    }
+    
+    /**
+     * Returns the cells of the moves played in the game, in order.
+     */
+    private static int[] movesOf(TicTacToeGame game) {
+        int[] moves = new int[game.getMoveCount()];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = game.getMove(i);
+        return moves;
+    }
+    
+    /**
+     * Replays the moves into the thinker's game, made on first use and again if the
+     * variant changes, and returns it.
+     */
+    private TicTacToeGame replay(int size, int winLength, String starter, int[] moves) {
+        if (position == null || position.getSize() != size || position.getWinLength() != winLength)
+            position = new TicTacToeGame(size, winLength, starter);
+        position.initializeGame(starter);
+        for (int cell : moves) {
+            position.makeMove(cell / size, cell % size);
+            position.switchPlayer();
+        }
+        return position;
+    }
+}
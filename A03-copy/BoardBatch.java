@@ -0,0 +1,411 @@
+import java.util.SplittableRandom;
+
+/**
+ * This class plays many independent games on small boards in lockstep, for
+ * generating training data. The games are kept in parallel arrays instead of
+ * one TicTacToeGame object each: one 64-bit mask per player and game, where
+ * cell (row, col) is bit row * size + col, so boards of up to 8x8 cells fit.
+ * 
+ * A step applies one move to every game at once. After a first pass that turns
+ * the moves into masks, it runs a few short loops over arrays of longs that do
+ * the same arithmetic for every game, without branches. The JIT compiler turns
+ * each of them into vector instructions that update several games at a time;
+ * it only does so for loops with small bodies, which is why the step is split
+ * into several passes rather than one. A win is
+ * found with three shift-and-AND operations per line direction: the mover's
+ * mask AND-ed with itself shifted one cell along the line keeps the first cell
+ * of every run of two, doing the same with that mask and a shift of up to two
+ * cells keeps runs of up to four, and once more runs of up to eight. Only cells
+ * where a line of winLength fits on the board are kept, so lines cannot wrap
+ * from one row into the next. Nothing is allocated per game or per step.
+ * 
+ * A BoardBatch is not thread-safe; split large batches between threads instead.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class BoardBatch {
+    // Largest board whose cells fit in one long.
+    public static final int MAX_SIZE = 8;
+    
+    // Status of each game.
+    public static final byte ONGOING = 0;
+    public static final byte X_WON = 1;
+    public static final byte O_WON = 2;
+    public static final byte DRAW = 3;
+    
+    // Passed in a move vector for games that should not move this step.
+    public static final int NO_MOVE = -1;
+    
+    private static final long BYTES_ONES = 0x0101010101010101L;
+    private static final long BYTES_HIGH = 0x8080808080808080L;
+    // SELECT_IN_BYTE[k << 8 | b] is the index of the k-th (from 0) set bit of the byte b.
+    private static final byte[] SELECT_IN_BYTE = new byte[8 << 8];
+    
+    static {
+        for (int b = 0; b < 256; b++) {
+            int k = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((b & (1 << bit)) != 0)
+                    SELECT_IN_BYTE[k++ << 8 | b] = (byte) bit;
+            }
+        }
+    }
+    
+    private final int games;
+    private final int size;
+    private final int winLength;
+    private final long fullMask;
+    // For each direction: the three shifts that find runs of winLength (0 leaves a mask as it
+    // is), at shifts[3 * d] to shifts[3 * d + 2], and the cells a line can start on.
+    private final int[] shifts;
+    private final long[] starts;
+    
+    // Everything the vectorized loops touch is a long per game: the marks of each player,
+    // all ones if X is to move (else 0), and the status; and, during a step, the mark placed
+    // and a scratch mask passed from one loop to the next.
+    private final long[] xBits;
+    private final long[] oBits;
+    private final long[] xToMove;
+    private final long[] status;
+    private final long[] placed;
+    private final long[] scratch;
+    
+    /**
+     * Constructs a batch of the given number of games on size x size boards where
+     * winLength marks in a row win, all empty with X to move.
+     * @param games the number of games in the batch
+     * @param size the number of rows and columns (1-8)
+     * @param winLength the number of marks in a row needed to win (1-size)
+     */
+    public BoardBatch(int games, int size, int winLength) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE + ": " + size);
+        if (winLength < 1 || winLength > size)
+            throw new IllegalArgumentException("Win length must be between 1 and " + size + ": " + winLength);
+        this.games = games;
+        this.size = size;
+        this.winLength = winLength;
+        int cells = size * size;
+        fullMask = cells == 64 ? -1L : (1L << cells) - 1;
+        
+        // Horizontal, vertical, and both diagonals, as in TicTacToeGame.
+        int[] dirRow = {0, 1, 1, 1};
+        int[] dirCol = {1, 0, 1, -1};
+        shifts = new int[3 * dirRow.length];
+        starts = new long[dirRow.length];
+        for (int d = 0; d < dirRow.length; d++) {
+            int step = dirRow[d] * size + dirCol[d];
+            // Each shift may at most double the run length covered so far.
+            int length = 1;
+            for (int j = 0; j < 3; j++) {
+                int extend = Math.min(length, winLength - length);
+                shifts[3 * d + j] = step * extend;
+                length += extend;
+            }
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    int endRow = r + dirRow[d] * (winLength - 1);
+                    int endCol = c + dirCol[d] * (winLength - 1);
+                    if (endRow < size && endCol >= 0 && endCol < size)
+                        starts[d] |= 1L << (r * size + c);
+                }
+            }
+        }
+        
+        xBits = new long[games];
+        oBits = new long[games];
+        xToMove = new long[games];
+        status = new long[games];
+        placed = new long[games];
+        scratch = new long[games];
+        reset(TicTacToeGame.PLAYER_X);
+    }
+    
+    /**
+     * Empties every board, with the given player to move.
+     */
+    public void reset(String startingPlayer) {
+        for (int i = 0; i < games; i++)
+            reset(i, startingPlayer);
+    }
+    
+    /**
+     * Empties one board, with the given player to move.
+     */
+    public void reset(int game, String startingPlayer) {
+        xBits[game] = 0L;
+        oBits[game] = 0L;
+        xToMove[game] = TicTacToeGame.PLAYER_X.equals(startingPlayer) ? -1L : 0L;
+        status[game] = ONGOING;
+    }
+    
+    /**
+     * Empties the boards of the games that are over, with the given player to move, and
+     * returns how many there were.
+     */
+    public int resetFinished(String startingPlayer) {
+        int count = 0;
+        for (int i = 0; i < games; i++) {
+            if (status[i] != ONGOING) {
+                reset(i, startingPlayer);
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Copies the position of a game in progress or over into one board of the batch.
+     */
+    public void copyFrom(int game, TicTacToeGame source) {
+        if (source.getSize() != size || source.getWinLength() != winLength)
+            throw new IllegalArgumentException("Batch is for " + size + "x" + size + ", " + winLength + " in a row");
+        long x = 0L;
+        long o = 0L;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                String cell = source.getCell(r, c);
+                if (cell.equals(TicTacToeGame.PLAYER_X))
+                    x |= 1L << (r * size + c);
+                else if (cell.equals(TicTacToeGame.PLAYER_O))
+                    o |= 1L << (r * size + c);
+            }
+        }
+        xBits[game] = x;
+        oBits[game] = o;
+        xToMove[game] = source.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X) ? -1L : 0L;
+        String winner = source.getWinner();
+        status[game] = winner.equals(TicTacToeGame.PLAYER_X) ? X_WON : winner.equals(TicTacToeGame.PLAYER_O) ? O_WON
+                     : winner.equals(TicTacToeGame.TIE) ? DRAW : ONGOING;
+    }
+    
+    /**
+     * Copies a snapshot, in constant time, into one board of the batch.
+     */
+    public void copyFrom(int game, BoardSnapshot source) {
+        if (source.getSize() != size || source.getWinLength() != winLength)
+            throw new IllegalArgumentException("Batch is for " + size + "x" + size + ", " + winLength + " in a row");
+        xBits[game] = source.getXBits();
+        oBits[game] = source.getOBits();
+        xToMove[game] = source.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X) ? -1L : 0L;
+        String winner = source.getWinner();
+        status[game] = winner.equals(TicTacToeGame.PLAYER_X) ? X_WON : winner.equals(TicTacToeGame.PLAYER_O) ? O_WON
+                     : winner.equals(TicTacToeGame.TIE) ? DRAW : ONGOING;
+    }
+    
+    /**
+     * Plays one move in every game that is not over: moves[i], encoded as row * size + col,
+     * by the player to move in game i, who then passes the turn. Games whose move is NO_MOVE
+     * are left as they are, and so are games that are over, whatever their move. Returns
+     * the number of games that ended with this step.
+     * @throws IllegalArgumentException if a move is off the board or on an occupied cell;
+     *         no game has moved then.
+     */
+    public int applyMoves(int[] moves) {
+        int cells = size * size;
+        long bad = 0L;
+        for (int i = 0; i < games; i++) {
+            int move = moves[i];
+            boolean moving = move != NO_MOVE && status[i] == ONGOING;
+            long bit = moving ? 1L << move : 0L;
+            bad |= (moving && (move < 0 || move >= cells) ? 1L : 0L) | (bit & (xBits[i] | oBits[i]));
+            placed[i] = bit;
+        }
+        if (bad != 0L)
+            throw new IllegalArgumentException("Bad move: " + describeBadMove(moves));
+        
+        // Place the marks, and keep the mover's marks.
+        for (int i = 0; i < games; i++) {
+            long bit = placed[i];
+            long xMask = xToMove[i];
+            long xb = xBits[i] | (bit & xMask);
+            long ob = oBits[i] | (bit & ~xMask);
+            xBits[i] = xb;
+            oBits[i] = ob;
+            scratch[i] = (xb & xMask) | (ob & ~xMask);
+        }
+        
+        // Find the mover's lines. The shifts are copied into locals so that the loop only
+        // reads arrays indexed by game.
+        int h1 = shifts[0], h2 = shifts[1], h3 = shifts[2];
+        int v1 = shifts[3], v2 = shifts[4], v3 = shifts[5];
+        int d1 = shifts[6], d2 = shifts[7], d3 = shifts[8];
+        int a1 = shifts[9], a2 = shifts[10], a3 = shifts[11];
+        long hStarts = starts[0], vStarts = starts[1], dStarts = starts[2], aStarts = starts[3];
+        for (int i = 0; i < games; i++) {
+            long mover = scratch[i];
+            scratch[i] = (run(mover, h1, h2, h3) & hStarts) | (run(mover, v1, v2, v3) & vStarts)
+                       | (run(mover, d1, d2, d3) & dStarts) | (run(mover, a1, a2, a3) & aStarts);
+        }
+        
+        // Work out the status each game would have if it moved. X_WON is 1 and O_WON is 2,
+        // so the mover's win is 2 + xToMove.
+        long full = fullMask;
+        for (int i = 0; i < games; i++) {
+            long won = allOnesIfNonZero(scratch[i]);
+            long filled = ~allOnesIfNonZero((xBits[i] | oBits[i]) ^ full);
+            scratch[i] = (won & (2 + xToMove[i])) | (~won & filled & DRAW);
+        }
+        
+        // Update the games that moved: their status, and the turn.
+        long finished = 0L;
+        for (int i = 0; i < games; i++) {
+            long active = allOnesIfNonZero(placed[i]);
+            long result = active & scratch[i];
+            status[i] |= result;
+            xToMove[i] ^= active;
+            finished -= allOnesIfNonZero(result);
+        }
+        return (int) finished;
+    }
+    
+    /**
+     * Fills moves with a random free cell for every game that is not over, and NO_MOVE for
+     * the others. Every free cell of a game is equally likely.
+     */
+    public void randomMoves(SplittableRandom random, int[] moves) {
+        for (int i = 0; i < games; i++) {
+            if (status[i] != ONGOING) {
+                moves[i] = NO_MOVE;
+                continue;
+            }
+            long free = ~(xBits[i] | oBits[i]) & fullMask;
+            // Scales 32 random bits to [0, free cells); the bias is below 2^-26.
+            int k = (int) (((random.nextLong() >>> 32) * Long.bitCount(free)) >>> 32);
+            moves[i] = selectBit(free, k);
+        }
+    }
+    
+    /**
+     * Returns the mask with a bit on the first of every winLength cells in a row of bits,
+     * for the three shifts of one direction.
+     */
+    private static long run(long bits, int shift1, int shift2, int shift3) {
+        bits &= bits >>> shift1;
+        bits &= bits >>> shift2;
+        return bits & (bits >>> shift3);
+    }
+    
+    /**
+     * Returns -1 (all ones) if the value is not zero, else 0, without branching.
+     */
+    private static long allOnesIfNonZero(long value) {
+        return (value | -value) >> 63;
+    }
+    
+    /**
+     * Returns the index of the k-th (from 0) set bit of bits, which must have more than k
+     * set bits. The set bits of every byte are counted in parallel, the byte holding the
+     * wanted bit is found by comparing all eight running totals with k at once, and the bit
+     * within that byte is looked up. Unlike counting off bits one at a time, this takes the
+     * same few steps for any k and has no branches, which would be taken at random.
+     */
+    private static int selectBit(long bits, int k) {
+        long counts = bits - ((bits >>> 1) & 0x5555555555555555L);
+        counts = (counts & 0x3333333333333333L) + ((counts >>> 2) & 0x3333333333333333L);
+        counts = (counts + (counts >>> 4)) & 0x0F0F0F0F0F0F0F0FL;
+        // Byte i of totals is the number of set bits in bytes 0 to i.
+        long totals = counts * BYTES_ONES;
+        // The high bit of byte i is set if the wanted bit lies beyond byte i.
+        long beyond = ((k * BYTES_ONES | BYTES_HIGH) - totals) & BYTES_HIGH;
+        int shift = Long.bitCount(beyond) << 3;
+        int rank = k - (int) (((totals << 8) >>> shift) & 0xFF);
+        return shift + SELECT_IN_BYTE[rank << 8 | (int) ((bits >>> shift) & 0xFF)];
+    }
+    
+    /**
+     * Describes the first bad move, for the exception thrown by applyMoves.
+     */
+    private String describeBadMove(int[] moves) {
+        for (int i = 0; i < games; i++) {
+            int move = moves[i];
+            if (move == NO_MOVE || status[i] != ONGOING)
+                continue;
+            if (move < 0 || move >= size * size)
+                return "game " + i + ", cell " + move + " is off the board";
+            if (((xBits[i] | oBits[i]) & (1L << move)) != 0)
+                return "game " + i + ", cell " + move + " is not free";
+        }
+        return "none";
+    }
+    
+    /**
+     * Returns the number of games in the batch.
+     */
+    public int getGames() {
+        return games;
+    }
+    
+    /**
+     * Returns the number of rows (and columns) of each board.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of marks in a row needed to win.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+    
+    /**
+     * Returns the status of a game: ONGOING, X_WON, O_WON or DRAW.
+     */
+    public byte getStatus(int game) {
+        return (byte) status[game];
+    }
+    
+    /**
+     * Returns the winner of a game ("X", "O", "T" for tie, or EMPTY if it is not over), as
+     * TicTacToeGame.getWinner does.
+     */
+    public String getWinner(int game) {
+        switch ((int) status[game]) {
+            case X_WON:
+                return TicTacToeGame.PLAYER_X;
+            case O_WON:
+                return TicTacToeGame.PLAYER_O;
+            case DRAW:
+                return TicTacToeGame.TIE;
+            default:
+                return TicTacToeGame.EMPTY;
+        }
+    }
+    
+    /**
+     * Returns the player to move in a game.
+     */
+    public String getCurrentPlayer(int game) {
+        return xToMove[game] != 0L ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+    }
+    
+    /**
+     * Returns the value at the given cell of a game.
+     */
+    public String getCell(int game, int row, int col) {
+        long bit = 1L << (row * size + col);
+        if ((xBits[game] & bit) != 0)
+            return TicTacToeGame.PLAYER_X;
+        if ((oBits[game] & bit) != 0)
+            return TicTacToeGame.PLAYER_O;
+        return TicTacToeGame.EMPTY;
+    }
+    
+    /**
+     * Returns the cells of X in a game as a mask, where cell (row, col) is bit row * size + col.
+     */
+    public long getXBits(int game) {
+        return xBits[game];
+    }
+    
+    /**
+     * Returns the cells of O in a game as a mask, where cell (row, col) is bit row * size + col.
+     */
+    public long getOBits(int game) {
+        return oBits[game];
+    }
+}
@@ -0,0 +1,223 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+
+/**
+ * This class draws the tic-tac-toe board as a single component, in place of a
+ * grid of buttons. A click is turned into a cell by dividing its coordinates by
+ * the cell size, and a change to one cell repaints only that cell, so boards of
+ * 100x100 cells stay responsive. The X and O marks are drawn once per cell size
+ * into images that are then copied into the cells.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class BoardPanel extends JComponent {
+    
+    /**
+     * Receives clicks on the cells of an enabled board.
+     */
+    public interface CellListener {
+        /** The cell at (row, col) was clicked. */
+        void cellClicked(int row, int col);
+    }
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final byte EMPTY = 0;
+    private static final byte X = 1;
+    private static final byte O = 2;
+    
+    private static final Color GRID_COLOR = Color.GRAY;
+    private static final Color HIGHLIGHT_COLOR = Color.GREEN;
+    
+    private final int size;
+    private final CellListener listener;
+    // The mark in each cell, indexed row * size + col, and the cells of the winning line.
+    private final byte[] marks;
+    private final BitSet highlighted = new BitSet();
+    
+    // The marks drawn at glyphSize, for enabled and disabled boards, indexed by mark.
+    private final BufferedImage[] glyphs = new BufferedImage[3];
+    private final BufferedImage[] disabledGlyphs = new BufferedImage[3];
+    private int glyphSize;
+    
+    /**
+     * Creates an empty, enabled board of size x size cells, each preferably cellSize
+     * pixels wide, that reports clicks to the listener.
+     */
+    public BoardPanel(int size, int cellSize, CellListener listener) {
+        this.size = size;
+        this.listener = listener;
+        marks = new byte[size * size];
+        setPreferredSize(new Dimension(size * cellSize, size * cellSize));
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                int cell = cellSize();
+                // A board narrower than one pixel a cell has no cells to click.
+                if (cell == 0)
+                    return;
+                int row = (e.getY() - originY(cell)) / cell;
+                int col = (e.getX() - originX(cell)) / cell;
+                if (isEnabled() && e.getY() >= originY(cell) && e.getX() >= originX(cell) && row < size && col < size)
+                    BoardPanel.this.listener.cellClicked(row, col);
+            }
+        });
+    }
+    
+    /**
+     * Shows the given player's mark ("X", "O", or EMPTY) in a cell.
+     */
+    public void setMark(int row, int col, String player) {
+        byte mark = player.equals(TicTacToeGame.PLAYER_X) ? X : player.equals(TicTacToeGame.PLAYER_O) ? O : EMPTY;
+        int index = row * size + col;
+        if (marks[index] != mark) {
+            marks[index] = mark;
+            repaintCell(row, col);
+        }
+    }
+    
+    /**
+     * Highlights the given cells, as {row, col} pairs, such as a winning combination.
+     */
+    public void highlight(int[][] cells) {
+        for (int[] cell : cells) {
+            highlighted.set(cell[0] * size + cell[1]);
+            repaintCell(cell[0], cell[1]);
+        }
+    }
+    
+    /**
+     * Empties every cell and removes the highlights, with a single repaint.
+     */
+    public void clear() {
+        Arrays.fill(marks, EMPTY);
+        highlighted.clear();
+        repaint();
+    }
+    
+    /**
+     * Enables or disables clicks on the board; the marks of a disabled board are greyed out.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (enabled != isEnabled()) {
+            super.setEnabled(enabled);
+            repaint();
+        }
+    }
+    
+    /**
+     * Paints the cells inside the clip only.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        int cell = cellSize();
+        int x0 = originX(cell);
+        int y0 = originY(cell);
+        g.setColor(getParent() != null ? getParent().getBackground() : getBackground());
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (cell == 0)
+            return;
+        BufferedImage[] images = glyphs(cell);
+        Color background = UIManager.getColor("Button.background");
+        int firstRow = Math.max(0, (clip.y - y0) / cell);
+        int lastRow = Math.min(size - 1, (clip.y + clip.height - 1 - y0) / cell);
+        int firstCol = Math.max(0, (clip.x - x0) / cell);
+        int lastCol = Math.min(size - 1, (clip.x + clip.width - 1 - x0) / cell);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int index = row * size + col;
+                int x = x0 + col * cell;
+                int y = y0 + row * cell;
+                g.setColor(highlighted.get(index) ? HIGHLIGHT_COLOR : background != null ? background : Color.WHITE);
+                g.fillRect(x, y, cell, cell);
+                g.setColor(GRID_COLOR);
+                g.drawRect(x, y, cell - 1, cell - 1);
+                if (marks[index] != EMPTY)
+                    g.drawImage(images[marks[index]], x, y, null);
+            }
+        }
+    }
+    
+    /**
+     * Returns the side of a cell at the component's current size.
+     */
+    private int cellSize() {
+        return Math.min(getWidth(), getHeight()) / size;
+    }
+    
+    /**
+     * Returns the left edge of the board, which is centred in the component.
+     */
+    private int originX(int cell) {
+        return (getWidth() - cell * size) / 2;
+    }
+    
+    /**
+     * Returns the top edge of the board, which is centred in the component.
+     */
+    private int originY(int cell) {
+        return (getHeight() - cell * size) / 2;
+    }
+    
+    /**
+     * Repaints one cell.
+     */
+    private void repaintCell(int row, int col) {
+        int cell = cellSize();
+        repaint(originX(cell) + col * cell, originY(cell) + row * cell, cell, cell);
+    }
+    
+    /**
+     * Returns the images of the marks for the given cell size and the enabled state,
+     * drawing them if the cell size has changed.
+     */
+    private BufferedImage[] glyphs(int cell) {
+        if (cell != glyphSize) {
+            Color enabled = UIManager.getColor("Button.foreground");
+            Color disabled = UIManager.getColor("Button.disabledText");
+            glyphs[X] = drawGlyph(TicTacToeGame.PLAYER_X, cell, enabled != null ? enabled : Color.BLACK);
+            glyphs[O] = drawGlyph(TicTacToeGame.PLAYER_O, cell, enabled != null ? enabled : Color.BLACK);
+            disabledGlyphs[X] = drawGlyph(TicTacToeGame.PLAYER_X, cell, disabled != null ? disabled : Color.GRAY);
+            disabledGlyphs[O] = drawGlyph(TicTacToeGame.PLAYER_O, cell, disabled != null ? disabled : Color.GRAY);
+            glyphSize = cell;
+        }
+        return isEnabled() ? glyphs : disabledGlyphs;
+    }
+    
+    /**
+     * Draws a mark centred in a transparent image of one cell.
+     */
+    private static BufferedImage drawGlyph(String text, int cell, Color color) {
+        BufferedImage image = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font("Arial", Font.BOLD, Math.max(1, cell * 3 / 5)));
+        g.setColor(color);
+        FontMetrics metrics = g.getFontMetrics();
+        int x = (cell - metrics.stringWidth(text)) / 2;
+        int y = (cell - metrics.getHeight()) / 2 + metrics.getAscent();
+        g.drawString(text, x, y);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * This class is an immutable position of a TicTacToeGame of up to 7x7: the board,
+ * the player to move and the result, packed into two longs. Each holds one
+ * player's marks, cell (row, col) at bit row * size + col as in the game, and
+ * the bits above the 49th carry the rest: the size and win length in X's word,
+ * the player to move and the result in O's.
+ * 
+ * TicTacToeGame.snapshot() takes one in constant time, without looking at the
+ * cells. Since its fields are final, a snapshot can be handed to other threads
+ * through any field, even a plain one, and read by any number of them at once
+ * without locks; the two words can also be stored or sent and turned back into
+ * the same snapshot with fromWords.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public final class BoardSnapshot {
+    public static final int MAX_SIZE = 7;
+    
+    private static final int META_SHIFT = MAX_SIZE * MAX_SIZE;
+    private static final long CELL_MASK = (1L << META_SHIFT) - 1;
+    // X's word: size and win length, 4 bits each.
+    private static final int SIZE_SHIFT = META_SHIFT;
+    private static final int WIN_LENGTH_SHIFT = META_SHIFT + 4;
+    // O's word: 1 if X is to move, then the result.
+    private static final int X_TO_MOVE_SHIFT = META_SHIFT;
+    private static final int RESULT_SHIFT = META_SHIFT + 1;
+    private static final int ONGOING = 0;
+    private static final int X_WON = 1;
+    private static final int O_WON = 2;
+    private static final int TIE = 3;
+    
+    private final long xWord;
+    private final long oWord;
+    
+    private BoardSnapshot(long xWord, long oWord) {
+        this.xWord = xWord;
+        this.oWord = oWord;
+    }
+    
+    /**
+     * Packs a position; called by TicTacToeGame, which knows it to be consistent.
+     */
+    static BoardSnapshot of(int size, int winLength, long xBits, long oBits, boolean xToMove, String winner) {
+        if (size > MAX_SIZE)
+            throw new IllegalStateException("Snapshots hold boards of up to " + MAX_SIZE + "x" + MAX_SIZE + ": " + size);
+        int result = winner.equals(TicTacToeGame.PLAYER_X) ? X_WON : winner.equals(TicTacToeGame.PLAYER_O) ? O_WON
+                   : winner.equals(TicTacToeGame.TIE) ? TIE : ONGOING;
+        return new BoardSnapshot(xBits | (long) size << SIZE_SHIFT | (long) winLength << WIN_LENGTH_SHIFT,
+                                 oBits | (xToMove ? 1L : 0L) << X_TO_MOVE_SHIFT | (long) result << RESULT_SHIFT);
+    }
+    
+    /**
+     * Returns the snapshot whose words, from getXWord and getOWord, are given.
+     * @throws IllegalArgumentException if the words do not hold a position.
+     */
+    public static BoardSnapshot fromWords(long xWord, long oWord) {
+        int size = (int) (xWord >>> SIZE_SHIFT) & 0xF;
+        int winLength = (int) (xWord >>> WIN_LENGTH_SHIFT) & 0xF;
+        long board = size == 0 ? 0L : -1L >>> (64 - size * size);
+        if (size < 1 || size > MAX_SIZE || winLength < 1 || winLength > size
+            || (xWord >>> WIN_LENGTH_SHIFT + 4) != 0 || (oWord >>> RESULT_SHIFT + 2) != 0
+            || (xWord & CELL_MASK & ~board) != 0 || (oWord & CELL_MASK & ~board) != 0
+            || (xWord & oWord & CELL_MASK) != 0)
+            throw new IllegalArgumentException("Not a snapshot: " + Long.toHexString(xWord) + " " + Long.toHexString(oWord));
+        return new BoardSnapshot(xWord, oWord);
+    }
+    
+    /**
+     * Returns X's word: X's marks, the size and the win length.
+     */
+    public long getXWord() {
+        return xWord;
+    }
+    
+    /**
+     * Returns O's word: O's marks, the player to move and the result.
+     */
+    public long getOWord() {
+        return oWord;
+    }
+    
+    /**
+     * Returns X's marks, one bit per cell at row * size + col.
+     */
+    public long getXBits() {
+        return xWord & CELL_MASK;
+    }
+    
+    /**
+     * Returns O's marks, one bit per cell at row * size + col.
+     */
+    public long getOBits() {
+        return oWord & CELL_MASK;
+    }
+    
+    /**
+     * Returns the number of rows (and columns) on the board.
+     */
+    public int getSize() {
+        return (int) (xWord >>> SIZE_SHIFT) & 0xF;
+    }
+    
+    /**
+     * Returns the number of marks in a row needed to win.
+     */
+    public int getWinLength() {
+        return (int) (xWord >>> WIN_LENGTH_SHIFT) & 0xF;
+    }
+    
+    /**
+     * Returns the value at the given cell: PLAYER_X, PLAYER_O, or EMPTY.
+     * @throws IndexOutOfBoundsException if the cell is off the board.
+     */
+    public String getCell(int row, int col) {
+        long bit = 1L << cellIndex(row, col);
+        if ((xWord & bit) != 0)
+            return TicTacToeGame.PLAYER_X;
+        if ((oWord & bit) != 0)
+            return TicTacToeGame.PLAYER_O;
+        return TicTacToeGame.EMPTY;
+    }
+    
+    /**
+     * Returns whether the given cell is empty.
+     * @throws IndexOutOfBoundsException if the cell is off the board.
+     */
+    public boolean isEmpty(int row, int col) {
+        return ((xWord | oWord) & (1L << cellIndex(row, col))) == 0;
+    }
+    
+    /**
+     * Returns the bit index of a cell. The bits past the board hold the size and win
+     * length, so a cell off the board is refused rather than read.
+     */
+    private int cellIndex(int row, int col) {
+        int size = getSize();
+        if (row < 0 || row >= size || col < 0 || col >= size)
+            throw new IndexOutOfBoundsException("Cell " + row + "," + col + " is off the " + size + "x" + size + " board");
+        return row * size + col;
+    }
+    
+    /**
+     * Returns the number of marks on the board.
+     */
+    public int getMoveCount() {
+        return Long.bitCount((xWord | oWord) & CELL_MASK);
+    }
+    
+    /**
+     * Returns the number of empty cells.
+     */
+    public int getNumFreeSquares() {
+        int size = getSize();
+        return size * size - getMoveCount();
+    }
+    
+    /**
+     * Returns the player to move.
+     */
+    public String getCurrentPlayer() {
+        return (oWord >>> X_TO_MOVE_SHIFT & 1) != 0 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+    }
+    
+    /**
+     * Returns the winner ("X", "O", "T" for tie, or EMPTY if the game is not over).
+     */
+    public String getWinner() {
+        switch ((int) (oWord >>> RESULT_SHIFT) & 3) {
+            case X_WON:
+                return TicTacToeGame.PLAYER_X;
+            case O_WON:
+                return TicTacToeGame.PLAYER_O;
+            case TIE:
+                return TicTacToeGame.TIE;
+            default:
+                return TicTacToeGame.EMPTY;
+        }
+    }
+    
+    /**
+     * Returns whether the game is over.
+     */
+    public boolean isGameOver() {
+        return (oWord >>> RESULT_SHIFT & 3) != ONGOING;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof BoardSnapshot && ((BoardSnapshot) other).xWord == xWord
+               && ((BoardSnapshot) other).oWord == oWord;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(xWord * 31 + oWord);
+    }
+    
+    /**
+     * Returns the board, one row per line with '.' for empty cells, followed by the
+     * player to move or the result.
+     */
+    @Override
+    public String toString() {
+        int size = getSize();
+        StringBuilder text = new StringBuilder(size * (size + 1) + 16);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                String cell = getCell(row, col);
+                text.append(cell.equals(TicTacToeGame.EMPTY) ? "." : cell);
+            }
+            text.append('\n');
+        }
+        return text.append(isGameOver() ? "Winner: " + getWinner() : getCurrentPlayer() + " to move").toString();
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a fixed-size table of search results keyed by canonical position
+ * keys, which any number of threads can read and write at once without locking.
+ * A Solver uses one as its transposition table, and solvers on different threads
+ * can share one so that each benefits from positions the others have searched.
+ * 
+ * The table is split into buckets of two entries. The first entry of a bucket
+ * keeps the deepest result (depth-preferred) and is only replaced by a result at
+ * least as deep, or once it is left over from an earlier search; the second
+ * always takes the newest result. Each entry is two longs, the data and the
+ * data XOR-ed with the key. A reader checks that the two still agree with the
+ * key it looks for, so an entry torn by two threads writing at once reads as a
+ * miss instead of as wrong data.
+ * 
+ * Hits, misses, stores and evictions are counted for tuning the table size.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class EvaluationCache {
+    // Returned by get for a key that is not in the table; it cannot be stored.
+    public static final long MISS = 0L;
+    
+    private static final int DEPTH_BITS = 16;
+    private static final int DEPTH_MASK = (1 << DEPTH_BITS) - 1;
+    
+    // Entry i is words 2i (key ^ data) and 2i + 1 (data).
+    private final AtomicLongArray words;
+    // Depth and search generation of each entry, for replacement decisions only.
+    private final int[] ages;
+    private final int bucketMask;
+    private final AtomicInteger generation = new AtomicInteger();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * Constructs an empty table of 2^bits entries, each using 20 bytes.
+     */
+    public EvaluationCache(int bits) {
+        if (bits < 1 || bits > 28)
+            throw new IllegalArgumentException("Table bits must be between 1 and 28: " + bits);
+        words = new AtomicLongArray(2 << bits);
+        ages = new int[1 << bits];
+        bucketMask = (1 << (bits - 1)) - 1;
+    }
+    
+    /**
+     * Returns the data stored for the key, or MISS.
+     */
+    public long get(long key) {
+        int entry = ((int) key & bucketMask) << 1;
+        for (int i = entry; i < entry + 2; i++) {
+            long data = words.getOpaque(2 * i + 1);
+            if (data != MISS && (words.getOpaque(2 * i) ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+    
+    /**
+     * Stores data for the key, found by a search of the given depth. An entry for the same
+     * key is overwritten; otherwise a shallower entry, or one from an earlier search, makes
+     * way for it in the depth-preferred slot, and the always-replace slot takes it if not.
+     */
+    public void put(long key, long data, int depth) {
+        if (data == MISS)
+            throw new IllegalArgumentException("Data 0 cannot be stored");
+        int entry = ((int) key & bucketMask) << 1;
+        int current = generation.get();
+        int age = current << DEPTH_BITS | Math.min(depth, DEPTH_MASK);
+        int deep = ages[entry];
+        int target;
+        if (sameKey(entry, key) || deep >>> DEPTH_BITS != current || (deep & DEPTH_MASK) <= depth) {
+            target = entry;
+        } else {
+            target = entry + 1;
+        }
+        long old = words.getOpaque(2 * target + 1);
+        if (old != MISS && !sameKey(target, key))
+            evictions.increment();
+        ages[target] = age;
+        words.setOpaque(2 * target + 1, data);
+        words.setOpaque(2 * target, key ^ data);
+        stores.increment();
+    }
+    
+    /**
+     * Starts a new search: entries stored before it no longer keep their place in the
+     * depth-preferred slots, but can still be found.
+     */
+    public void newSearch() {
+        generation.incrementAndGet();
+    }
+    
+    /**
+     * Removes every entry. Must not run while other threads use the table.
+     */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++)
+            words.setOpaque(i, 0L);
+        for (int i = 0; i < ages.length; i++)
+            ages[i] = 0;
+    }
+    
+    /**
+     * Returns the number of entries the table can hold.
+     */
+    public int getCapacity() {
+        return ages.length;
+    }
+    
+    /**
+     * Returns the number of lookups that found their key.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Returns the number of lookups that did not find their key.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    /**
+     * Returns the fraction of lookups that found their key, or 0 before any lookup.
+     */
+    public double getHitRate() {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+    
+    /**
+     * Returns the number of results stored.
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+    
+    /**
+     * Returns the number of entries overwritten by a result for a different position.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        stores.reset();
+        evictions.reset();
+    }
+    
+    /**
+     * Returns whether entry i currently holds the key.
+     */
+    private boolean sameKey(int i, long key) {
+        long data = words.getOpaque(2 * i + 1);
+        return data != MISS && (words.getOpaque(2 * i) ^ data) == key;
+    }
+}
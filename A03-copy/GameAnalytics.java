@@ -0,0 +1,350 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps statistics of finished games of one board variant, updated
+ * as each game ends: how often each opening move wins, how long games last,
+ * which lines win most often, and how much it helps to move first.
+ * 
+ * Every statistic is a counter in an array indexed by cell, game length or
+ * line, so recording a game is a handful of atomic increments, whatever the
+ * number of games seen, and memory does not grow with them. Games may be
+ * recorded from several threads, and the statistics may be read at any time
+ * while they are; a reading taken meanwhile may count the latest game in some
+ * statistics and not yet in others.
+ * 
+ * A winning line is identified by the cell it starts from and its direction,
+ * as line = (row * size + col) * 4 + direction, where direction is 0 for a row,
+ * 1 for a column, 2 for a diagonal going down to the right and 3 for one going
+ * down to the left.
+ * 
+ * From the command line: java GameAnalytics journal [size [winLength]] reads a
+ * game journal in one pass and prints the statistics of its games of that
+ * variant, 3x3 by default.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GameAnalytics {
+    public static final int DIRECTIONS = 4;
+    // Games of a journal that have started but not ended; older ones are dropped beyond this.
+    public static final int MAX_OPEN_GAMES = 1024;
+    
+    private static final int[] DIR_ROW = {0, 1, 1, 1};
+    private static final int[] DIR_COL = {1, 0, 1, -1};
+    
+    private final int size;
+    private final int winLength;
+    // By first move: games, games won by the player who made it, and games they lost.
+    private final AtomicLongArray openingGames;
+    private final AtomicLongArray openingWins;
+    private final AtomicLongArray openingLosses;
+    // Games by number of moves played, from 0 to size * size.
+    private final AtomicLongArray lengths;
+    // Wins by winning line.
+    private final AtomicLongArray lineWins;
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder firstMoverWins = new LongAdder();
+    private final LongAdder secondMoverWins = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    
+    /**
+     * Creates empty statistics for games on a size x size board with winLength in a row.
+     */
+    public GameAnalytics(int size, int winLength) {
+        if (size < 1 || size > TicTacToeGame.MAX_SIZE || winLength < 1 || winLength > size)
+            throw new IllegalArgumentException("Bad board: " + size + "x" + size + ", " + winLength + " in a row");
+        this.size = size;
+        this.winLength = winLength;
+        int cells = size * size;
+        openingGames = new AtomicLongArray(cells);
+        openingWins = new AtomicLongArray(cells);
+        openingLosses = new AtomicLongArray(cells);
+        lengths = new AtomicLongArray(cells + 1);
+        lineWins = new AtomicLongArray(cells * DIRECTIONS);
+    }
+    
+    /**
+     * Records a finished game of this variant; games that are not over, or of another
+     * variant, are ignored. The game is only read.
+     */
+    public void record(TicTacToeGame game) {
+        if (!game.isGameOver() || game.getSize() != size || game.getWinLength() != winLength)
+            return;
+        int played = size * size - game.getNumFreeSquares();
+        games.increment();
+        moves.add(played);
+        lengths.incrementAndGet(played);
+        String winner = game.getWinner();
+        int opening = game.getMove(0);
+        String opener = game.getCell(opening / size, opening % size);
+        openingGames.incrementAndGet(opening);
+        if (winner.equals(TicTacToeGame.TIE)) {
+            draws.increment();
+            return;
+        }
+        if (winner.equals(opener)) {
+            firstMoverWins.increment();
+            openingWins.incrementAndGet(opening);
+        } else {
+            secondMoverWins.increment();
+            openingLosses.incrementAndGet(opening);
+        }
+        int[][] combination = game.getWinningCombination();
+        if (combination != null)
+            lineWins.incrementAndGet(lineOf(combination));
+    }
+    
+    /**
+     * Returns the line of a winning combination, whose cells go from its start in its direction.
+     */
+    private int lineOf(int[][] combination) {
+        int direction = 0;
+        if (combination.length > 1) {
+            int dRow = combination[1][0] - combination[0][0];
+            int dCol = combination[1][1] - combination[0][1];
+            while (DIR_ROW[direction] != dRow || DIR_COL[direction] != dCol)
+                direction++;
+        }
+        return (combination[0][0] * size + combination[0][1]) * DIRECTIONS + direction;
+    }
+    
+    /**
+     * Returns the number of games recorded.
+     */
+    public long getGames() {
+        return games.sum();
+    }
+    
+    /**
+     * Returns the number of games of a journal that could not be replayed, because a
+     * move was off the board or on an occupied cell.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    /**
+     * Returns the mean number of moves in a game, or 0 if none was recorded.
+     */
+    public double getAverageLength() {
+        long n = games.sum();
+        return n == 0 ? 0 : (double) moves.sum() / n;
+    }
+    
+    /**
+     * Returns the number of games that lasted the given number of moves.
+     */
+    public long getGamesOfLength(int length) {
+        return length < 0 || length >= lengths.length() ? 0 : lengths.get(length);
+    }
+    
+    /**
+     * Returns the number of games that opened on the given cell.
+     */
+    public long getOpeningGames(int row, int col) {
+        return openingGames.get(row * size + col);
+    }
+    
+    /**
+     * Returns the share of the games opened on the given cell that the opener won, or 0.
+     */
+    public double getOpeningWinRate(int row, int col) {
+        long n = openingGames.get(row * size + col);
+        return n == 0 ? 0 : (double) openingWins.get(row * size + col) / n;
+    }
+    
+    /**
+     * Returns the share of the games opened on the given cell that the opener lost, or 0.
+     */
+    public double getOpeningLossRate(int row, int col) {
+        long n = openingGames.get(row * size + col);
+        return n == 0 ? 0 : (double) openingLosses.get(row * size + col) / n;
+    }
+    
+    /**
+     * Returns the number of games won by the player who moved first.
+     */
+    public long getFirstMoverWins() {
+        return firstMoverWins.sum();
+    }
+    
+    /**
+     * Returns the number of games won by the player who moved second.
+     */
+    public long getSecondMoverWins() {
+        return secondMoverWins.sum();
+    }
+    
+    /**
+     * Returns the number of drawn games.
+     */
+    public long getDraws() {
+        return draws.sum();
+    }
+    
+    /**
+     * Returns the first mover's advantage: the share of games they won minus the share
+     * their opponent won, from -1 to 1, or 0 if no game was recorded.
+     */
+    public double getFirstMoverAdvantage() {
+        long n = games.sum();
+        return n == 0 ? 0 : (double) (firstMoverWins.sum() - secondMoverWins.sum()) / n;
+    }
+    
+    /**
+     * Returns the number of games won on the given line.
+     */
+    public long getLineWins(int line) {
+        return lineWins.get(line);
+    }
+    
+    /**
+     * Returns the lines with the most wins, most first, at most count of them, and
+     * only lines that won at least once.
+     */
+    public int[] getTopLines(int count) {
+        int[] top = new int[Math.min(count, lineWins.length())];
+        long[] wins = new long[top.length];
+        int found = 0;
+        for (int line = 0; line < lineWins.length(); line++) {
+            long w = lineWins.get(line);
+            if (w == 0 || (found == top.length && w <= wins[found - 1]))
+                continue;
+            // Insert in order, dropping the last if full.
+            int at = found < top.length ? found++ : found - 1;
+            while (at > 0 && wins[at - 1] < w) {
+                top[at] = top[at - 1];
+                wins[at] = wins[at - 1];
+                at--;
+            }
+            top[at] = line;
+            wins[at] = w;
+        }
+        int[] result = new int[found];
+        System.arraycopy(top, 0, result, 0, found);
+        return result;
+    }
+    
+    /**
+     * Returns a line as text: its cells from first to last, as (row, col).
+     */
+    public String describeLine(int line) {
+        int cell = line / DIRECTIONS;
+        int direction = line % DIRECTIONS;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < winLength; i++) {
+            if (i > 0)
+                text.append(' ');
+            text.append('(').append(cell / size + i * DIR_ROW[direction]).append(", ")
+                .append(cell % size + i * DIR_COL[direction]).append(')');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Returns the statistics as text.
+     */
+    public String getReport() {
+        long n = getGames();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d games of %dx%d, %d in a row; %.2f moves on average%n", n, size, size,
+                                    winLength, getAverageLength()));
+        report.append(String.format("First mover: %d wins, %d losses, %d draws; advantage %+.3f%n",
+                                    getFirstMoverWins(), getSecondMoverWins(), getDraws(),
+                                    getFirstMoverAdvantage()));
+        report.append("Openings (games, won, lost by the opener):\n");
+        for (int cell = 0; cell < size * size; cell++) {
+            long opened = openingGames.get(cell);
+            if (opened > 0)
+                report.append(String.format("  (%d, %d): %d, %.1f%%, %.1f%%%n", cell / size, cell % size, opened,
+                                            100 * getOpeningWinRate(cell / size, cell % size),
+                                            100 * getOpeningLossRate(cell / size, cell % size)));
+        }
+        report.append("Most winning lines:\n");
+        for (int line : getTopLines(10))
+            report.append("  ").append(describeLine(line)).append(": ").append(getLineWins(line)).append('\n');
+        return report.toString();
+    }
+    
+    /**
+     * Returns a journal listener that replays the games of this variant into games of its
+     * own, checking every move, and records each one as it ends. It holds at most
+     * MAX_OPEN_GAMES unfinished games at once, reusing the games of those that end, so a
+     * journal of any length is read in constant memory. The listener is for one thread.
+     */
+    public GameJournal.Listener journalListener() {
+        Map<Long, TicTacToeGame> open = new LinkedHashMap<Long, TicTacToeGame>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, TicTacToeGame> eldest) {
+                // Games abandoned without a result are forgotten once there are too many.
+                return size() > MAX_OPEN_GAMES;
+            }
+        };
+        ArrayDeque<TicTacToeGame> spare = new ArrayDeque<>();
+        return new GameJournal.Listener() {
+            public void started(long gameId, int boardSize, int boardWinLength, String startingPlayer,
+                                String playerXName, String playerOName) {
+                if (boardSize != size || boardWinLength != winLength)
+                    return;
+                TicTacToeGame game = spare.isEmpty() ? new TicTacToeGame(size, winLength, startingPlayer)
+                                                     : spare.pop();
+                game.initializeGame(startingPlayer);
+                open.put(gameId, game);
+            }
+            
+            public void moved(long gameId, int row, int col) {
+                TicTacToeGame game = open.get(gameId);
+                if (game == null)
+                    return;
+                if (game.isGameOver() || row < 0 || row >= size || col < 0 || col >= size
+                    || !game.makeMove(row, col)) {
+                    rejected.increment();
+                    spare.push(open.remove(gameId));
+                } else if (!game.isGameOver()) {
+                    game.switchPlayer();
+                }
+            }
+            
+            public void undone(long gameId) {
+                TicTacToeGame game = open.get(gameId);
+                if (game != null)
+                    game.undo();
+            }
+            
+            public void gameOver(long gameId, String winner) {
+                TicTacToeGame game = open.remove(gameId);
+                if (game == null)
+                    return;
+                record(game);
+                spare.push(game);
+            }
+        };
+    }
+    
+    /**
+     * Prints the statistics of the games in a journal from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java GameAnalytics journal [size [winLength]]");
+            return;
+        }
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : TicTacToeGame.DEFAULT_SIZE;
+        int winLength = args.length > 2 ? Integer.parseInt(args[2]) : size;
+        GameAnalytics analytics = new GameAnalytics(size, winLength);
+        long start = System.nanoTime();
+        GameJournal.replay(Paths.get(args[0]), analytics.journalListener());
+        System.out.print(analytics.getReport());
+        System.out.printf("Read in %.2f s%s%n", (System.nanoTime() - start) / 1e9,
+                          analytics.getRejected() > 0 ? "; " + analytics.getRejected() + " games rejected" : "");
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class connects to a GameServer and turns its messages into calls on a
+ * Listener, made from a background reader thread. It is used by TicTacToeGUI to
+ * play online and can drive headless bots.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GameClient implements Closeable {
+    
+    /**
+     * Receives the server's messages. Methods are called on the client's reader thread.
+     */
+    public interface Listener {
+        /** Waiting for an opponent. */
+        void waiting();
+        
+        /** A match has started; symbol is the side this client plays. */
+        void started(int size, int winLength, String symbol, String opponentName, String startingPlayer);
+        
+        /** A move has been played by either side. */
+        void moved(String symbol, int row, int col);
+        
+        /** The match is over; winner is X, O, or T for tie. */
+        void gameOver(String winner);
+        
+        /** The opponent left before the end of the match. */
+        void opponentLeft();
+        
+        /** The server rejected a request. */
+        void error(String message);
+        
+        /** The connection has closed. */
+        void disconnected();
+    }
+    
+    private final LineChannel channel;
+    private final Listener listener;
+    private final Thread reader;
+    
+    /**
+     * Connects to the server at host:port as the given player name and starts reading.
+     */
+    public GameClient(String host, int port, String name, Listener listener) throws IOException {
+        SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port));
+        socket.socket().setTcpNoDelay(true);
+        channel = new LineChannel(socket);
+        this.listener = listener;
+        String hello = name.trim().replace(' ', '_');
+        if (hello.length() > GameServer.MAX_NAME)
+            hello = hello.substring(0, GameServer.MAX_NAME);
+        channel.writeLine(GameServer.HELLO + " " + hello);
+        reader = new Thread(this::readLoop, "GameClient-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    /**
+     * Asks for a match on a size x size board with winLength in a row.
+     */
+    public void play(int size, int winLength) throws IOException {
+        channel.writeLine(GameServer.PLAY + " " + size + " " + winLength);
+    }
+    
+    /**
+     * Plays a move in the current match.
+     */
+    public void move(int row, int col) throws IOException {
+        channel.writeLine(GameServer.MOVE + " " + row + " " + col);
+    }
+    
+    /**
+     * Leaves the server.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                channel.writeLine(GameServer.QUIT);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+    
+    /**
+     * Dispatches server messages to the listener until the connection closes.
+     */
+    private void readLoop() {
+        try {
+            String line;
+            while ((line = channel.readLine()) != null) {
+                String[] fields = line.split(" ");
+                switch (fields[0]) {
+                    case GameServer.WAIT:
+                        listener.waiting();
+                        break;
+                    case GameServer.START:
+                        listener.started(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), fields[3],
+                                         fields[4], fields[5]);
+                        break;
+                    case GameServer.MOVED:
+                        listener.moved(fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+                        break;
+                    case GameServer.OVER:
+                        listener.gameOver(fields[1]);
+                        break;
+                    case GameServer.LEFT:
+                        listener.opponentLeft();
+                        break;
+                    case GameServer.ERROR:
+                        listener.error(line.substring(Math.min(line.length(), GameServer.ERROR.length() + 1)));
+                        break;
+                    default:
+                        // WELCOME and anything newer than this client.
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // Treated as a disconnect below.
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+            listener.disconnected();
+        }
+    }
+}
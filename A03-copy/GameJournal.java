@@ -0,0 +1,566 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is an append-only log of games. The start of every game, every move
+ * and every result is written as a compact record, so that scores survive a
+ * restart and any past game can be replayed move by move.
+ * 
+ * Appending a record only copies a few bytes into memory. A background thread
+ * writes what has been appended every FLUSH_MILLIS as one frame and syncs it to
+ * disk, so all the moves in a frame share a single fsync (group commit). Each
+ * frame starts with the length and the CRC32C of its records. When a journal is
+ * opened, a frame that a crash cut short or that fails its checksum is truncated
+ * away, together with anything after it. Only one journal can have a file open at
+ * a time; it holds a lock on the file until it is closed. Once a frame could not
+ * be written, appending fails, so that games are not silently lost.
+ * 
+ * Every record starts with a varint holding (gameId << 2 | type), followed by
+ *   UNDO: nothing, the last move of the game was taken back;
+ *   START: size, winLength, startingPlayer (0 for X, 1 for O), X's name, O's name;
+ *   MOVE: row, col;
+ *   OVER: winner (0 for X, 1 for O, 2 for tie).
+ * Numbers are varints and names are a varint byte count followed by UTF-8, so a
+ * move on a board of up to 128x128 in one of the first 32 games takes 3 bytes.
+ * 
+ * From the command line: java GameJournal file [gameId] prints every game, or one.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GameJournal implements Closeable {
+    public static final String DEFAULT_FILE = "tictactoe.journal";
+    public static final int FLUSH_MILLIS = 5;
+    // Longer player names are cut to this many characters.
+    public static final int MAX_NAME = 64;
+    
+    private static final int UNDO = 0;
+    private static final int START = 1;
+    private static final int MOVE = 2;
+    private static final int OVER = 3;
+    
+    private static final int FRAME_HEADER = 8;
+    private static final int FRAME_SIZE = 1 << 16;
+    // The longest record: a START record with two names of MAX_NAME characters.
+    private static final int MAX_RECORD = 10 + 5 + 5 + 1 + 2 * (5 + 3 * MAX_NAME);
+    
+    /**
+     * Receives the records of a journal as it is replayed, in the order they were appended.
+     */
+    public interface Listener {
+        /** A game has started; startingPlayer is X or O. */
+        void started(long gameId, int size, int winLength, String startingPlayer, String playerXName,
+                     String playerOName);
+        
+        /** A move has been played in the game. */
+        void moved(long gameId, int row, int col);
+        
+        /** The last move of the game has been taken back. */
+        void undone(long gameId);
+        
+        /** The game is over; winner is X, O, or T for tie. */
+        void gameOver(long gameId, String winner);
+    }
+    
+    private final FileChannel channel;
+    private final Thread flusher;
+    private final CRC32C crc = new CRC32C();
+    // Records not yet handed to the flusher; the flusher owns the other frame buffer.
+    private ByteBuffer pending = newFrame();
+    private long nextGameId;
+    // Records appended, and records known to be on disk.
+    private long appended;
+    private long synced;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException failure;
+    
+    /**
+     * Opens the journal at path, creating it if needed, and recovers it after a crash.
+     */
+    public GameJournal(Path path) throws IOException {
+        this(path, null);
+    }
+    
+    /**
+     * Opens the journal at path, creating it if needed, and replays the games already in
+     * it to the given listener before new records are appended. A damaged tail left by a
+     * crash is truncated away.
+     * @throws IOException if the file cannot be read, or another journal has it open.
+     */
+    public GameJournal(Path path, Listener recovered) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        try {
+            // Two journals appending at their own positions would overwrite each other's records.
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null)
+                throw new IOException("The journal " + path + " is in use by another program");
+            nextGameId = scan(channel, recovered, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        flusher = new Thread(this::flushLoop, "GameJournal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    /**
+     * Records the start of a game and returns its id, which is used to record its moves.
+     * @throws UncheckedIOException if the journal could not be written; so do the other
+     * appending methods, and no more records can be appended.
+     */
+    public synchronized long startGame(int size, int winLength, String startingPlayer, String playerXName,
+                                       String playerOName) {
+        ByteBuffer out = room();
+        long gameId = nextGameId++;
+        putVarint(out, gameId << 2 | START);
+        putVarint(out, size);
+        putVarint(out, winLength);
+        out.put((byte) (startingPlayer.equals(TicTacToeGame.PLAYER_X) ? 0 : 1));
+        putName(out, playerXName);
+        putName(out, playerOName);
+        appended++;
+        return gameId;
+    }
+    
+    /**
+     * Records a move played in the given game.
+     */
+    public synchronized void move(long gameId, int row, int col) {
+        ByteBuffer out = room();
+        putVarint(out, gameId << 2 | MOVE);
+        putVarint(out, row);
+        putVarint(out, col);
+        appended++;
+    }
+    
+    /**
+     * Records that the last move of the given game was taken back.
+     */
+    public synchronized void undo(long gameId) {
+        ByteBuffer out = room();
+        putVarint(out, gameId << 2 | UNDO);
+        appended++;
+    }
+    
+    /**
+     * Records the result of the given game.
+     * @param winner "X", "O", or "T" for tie
+     */
+    public synchronized void gameOver(long gameId, String winner) {
+        ByteBuffer out = room();
+        putVarint(out, gameId << 2 | OVER);
+        out.put((byte) (winner.equals(TicTacToeGame.PLAYER_X) ? 0 : winner.equals(TicTacToeGame.PLAYER_O) ? 1 : 2));
+        appended++;
+    }
+    
+    /**
+     * Waits until every record appended so far is on disk.
+     * @throws IOException if the journal could not be written.
+     */
+    public synchronized void sync() throws IOException {
+        long target = appended;
+        flushRequested = true;
+        notifyAll();
+        while (synced < target && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the journal");
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+    
+    /**
+     * Writes the remaining records to disk and closes the journal.
+     * @throws IOException if the journal could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        channel.close();
+        synchronized (this) {
+            if (failure != null)
+                throw failure;
+        }
+    }
+    
+    /**
+     * Returns the pending frame once it has room for another record, waiting for the
+     * flusher if it is full. Called holding this journal's lock.
+     * @throws UncheckedIOException if a frame could not be written.
+     */
+    private ByteBuffer room() {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        boolean interrupted = false;
+        while (pending.remaining() < MAX_RECORD && failure == null) {
+            flushRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure != null)
+            throw new UncheckedIOException("The journal could not be written", failure);
+        // The flusher sleeps while there is nothing to write.
+        if (pending.position() == FRAME_HEADER)
+            notifyAll();
+        return pending;
+    }
+    
+    /**
+     * Writes frames until the journal is closed and everything appended is written.
+     * Appenders fill one buffer while this thread writes the other.
+     */
+    private void flushLoop() {
+        ByteBuffer frame = newFrame();
+        while (true) {
+            long records;
+            synchronized (this) {
+                try {
+                    while (!closed && pending.position() == FRAME_HEADER)
+                        wait();
+                    // Give other moves a moment to join this frame and share its fsync.
+                    if (!closed && !flushRequested)
+                        wait(FLUSH_MILLIS);
+                } catch (InterruptedException e) {
+                    // Nothing interrupts this thread; flush what there is.
+                }
+                flushRequested = false;
+                if (pending.position() == FRAME_HEADER)
+                    return;
+                ByteBuffer full = pending;
+                pending = frame;
+                frame = full;
+                records = appended;
+                notifyAll();
+            }
+            IOException error = null;
+            try {
+                if (failure == null)
+                    write(frame);
+            } catch (IOException e) {
+                error = e;
+            }
+            frame.clear().position(FRAME_HEADER);
+            synchronized (this) {
+                if (failure == null)
+                    failure = error;
+                // After a failure the frames are dropped, and sync and the appenders report it.
+                if (failure == null)
+                    synced = records;
+                notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Fills in the frame's header, writes it at the end of the file, and syncs it to disk.
+     */
+    private void write(ByteBuffer frame) throws IOException {
+        int length = frame.position() - FRAME_HEADER;
+        frame.flip();
+        frame.position(FRAME_HEADER);
+        crc.reset();
+        crc.update(frame);
+        frame.putInt(0, length);
+        frame.putInt(4, (int) crc.getValue());
+        frame.position(0);
+        while (frame.hasRemaining())
+            channel.write(frame);
+        channel.force(false);
+    }
+    
+    /**
+     * Returns an empty frame buffer, positioned after the header.
+     */
+    private static ByteBuffer newFrame() {
+        ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE);
+        frame.position(FRAME_HEADER);
+        return frame;
+    }
+    
+    /**
+     * Replays every game in the journal at path to the listener. Only frames that were
+     * completely written are read, so this is safe while another process appends.
+     */
+    public static void replay(Path path, Listener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(channel, listener, false);
+        }
+    }
+    
+    /**
+     * Replays the start, moves and result of one game in the journal at path.
+     */
+    public static void replayGame(Path path, long gameId, Listener listener) throws IOException {
+        replay(path, new Listener() {
+            public void started(long id, int size, int winLength, String startingPlayer, String playerXName,
+                                String playerOName) {
+                if (id == gameId)
+                    listener.started(id, size, winLength, startingPlayer, playerXName, playerOName);
+            }
+            
+            public void moved(long id, int row, int col) {
+                if (id == gameId)
+                    listener.moved(id, row, col);
+            }
+            
+            public void undone(long id) {
+                if (id == gameId)
+                    listener.undone(id);
+            }
+            
+            public void gameOver(long id, String winner) {
+                if (id == gameId)
+                    listener.gameOver(id, winner);
+            }
+        });
+    }
+    
+    /**
+     * Returns a listener that records every finished game it is given in the scoreboard,
+     * so that replaying a journal rebuilds its scores.
+     */
+    public static Listener scoreKeeper(Scoreboard scoreboard) {
+        // The names of the games still in progress.
+        Map<Long, String[]> players = new HashMap<>();
+        return new Listener() {
+            public void started(long gameId, int size, int winLength, String startingPlayer, String playerXName,
+                                String playerOName) {
+                players.put(gameId, new String[] { playerXName, playerOName });
+            }
+            
+            public void moved(long gameId, int row, int col) {
+            }
+            
+            public void undone(long gameId) {
+            }
+            
+            public void gameOver(long gameId, String winner) {
+                String[] names = players.remove(gameId);
+                if (names != null)
+                    scoreboard.recordGame(names[0], names[1], winner);
+            }
+        };
+    }
+    
+    /**
+     * Reads the frames of a journal from the start, passing their records to the listener
+     * if there is one, and stops at the first frame that is incomplete or damaged. If
+     * repair is set, the file is truncated there and positioned for appending.
+     * Returns the id of the next game.
+     */
+    private static long scan(FileChannel channel, Listener listener, boolean repair) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        CRC32C checksum = new CRC32C();
+        long end = channel.size();
+        long position = 0;
+        long nextGameId = 0;
+        while (position + FRAME_HEADER <= end) {
+            frame.clear().limit(FRAME_HEADER);
+            readFully(channel, frame, position);
+            int length = frame.getInt(0);
+            int expected = frame.getInt(4);
+            if (length <= 0 || length > FRAME_SIZE - FRAME_HEADER || position + FRAME_HEADER + length > end)
+                break;
+            frame.limit(FRAME_HEADER + length);
+            readFully(channel, frame, position + FRAME_HEADER);
+            frame.position(FRAME_HEADER);
+            checksum.reset();
+            checksum.update(frame);
+            if ((int) checksum.getValue() != expected)
+                break;
+            frame.position(FRAME_HEADER);
+            try {
+                nextGameId = Math.max(nextGameId, decode(frame, listener));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Unreadable journal record in the frame at " + position, e);
+            }
+            position += FRAME_HEADER + length;
+        }
+        if (repair) {
+            if (position < end)
+                channel.truncate(position);
+            channel.position(position);
+        }
+        return nextGameId;
+    }
+    
+    /**
+     * Decodes the records of one frame and returns one more than the highest game id
+     * started in it, or 0 if none was.
+     */
+    private static long decode(ByteBuffer records, Listener listener) {
+        long nextGameId = 0;
+        while (records.hasRemaining()) {
+            long header = getVarint(records);
+            long gameId = header >>> 2;
+            switch ((int) header & 3) {
+                case UNDO:
+                    if (listener != null)
+                        listener.undone(gameId);
+                    break;
+                case START:
+                    int size = (int) getVarint(records);
+                    int winLength = (int) getVarint(records);
+                    String startingPlayer = records.get() == 0 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+                    String playerXName = getName(records);
+                    String playerOName = getName(records);
+                    nextGameId = Math.max(nextGameId, gameId + 1);
+                    if (listener != null)
+                        listener.started(gameId, size, winLength, startingPlayer, playerXName, playerOName);
+                    break;
+                case MOVE:
+                    int row = (int) getVarint(records);
+                    int col = (int) getVarint(records);
+                    if (listener != null)
+                        listener.moved(gameId, row, col);
+                    break;
+                case OVER:
+                    byte winner = records.get();
+                    if (listener != null)
+                        listener.gameOver(gameId, winner == 0 ? TicTacToeGame.PLAYER_X
+                                          : winner == 1 ? TicTacToeGame.PLAYER_O : TicTacToeGame.TIE);
+                    break;
+            }
+        }
+        return nextGameId;
+    }
+    
+    /**
+     * Reads from the channel at position until the buffer is full.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("Journal ended early");
+            position += read;
+        }
+    }
+    
+    /**
+     * Writes a non-negative number in 7-bit groups, low group first, with the top bit
+     * of each byte set when more follow.
+     */
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+    
+    /**
+     * Reads a number written by putVarint.
+     */
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+    
+    /**
+     * Writes a player name, cut to MAX_NAME characters.
+     */
+    private static void putName(ByteBuffer out, String name) {
+        byte[] bytes = (name.length() > MAX_NAME ? name.substring(0, MAX_NAME) : name).getBytes(StandardCharsets.UTF_8);
+        putVarint(out, bytes.length);
+        out.put(bytes);
+    }
+    
+    /**
+     * Reads a name written by putName.
+     */
+    private static String getName(ByteBuffer in) {
+        byte[] bytes = new byte[(int) getVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Prints the games in a journal from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java GameJournal file [gameId]");
+            return;
+        }
+        Listener printer = new Listener() {
+            public void started(long gameId, int size, int winLength, String startingPlayer, String playerXName,
+                                String playerOName) {
+                System.out.println("Game " + gameId + ": " + size + "x" + size + ", " + winLength + " in a row, "
+                                   + playerXName + " (X) vs " + playerOName + " (O), " + startingPlayer + " starts");
+            }
+            
+            public void moved(long gameId, int row, int col) {
+                System.out.println("Game " + gameId + ": move " + row + " " + col);
+            }
+            
+            public void undone(long gameId) {
+                System.out.println("Game " + gameId + ": undo");
+            }
+            
+            public void gameOver(long gameId, String winner) {
+                System.out.println("Game " + gameId + ": " + (winner.equals(TicTacToeGame.TIE) ? "tie" : winner + " wins"));
+            }
+        };
+        Path path = Paths.get(args[0]);
+        if (args.length > 1)
+            replayGame(path, Long.parseLong(args[1]), printer);
+        else
+            replay(path, printer);
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.Arrays;
+
+/**
+ * This class lends out games of one board variant and takes them back, so that a
+ * server hosting many matches does not create a new TicTacToeGame for each one.
+ * A returned game is reset with initializeGame and lent out again; once the pool
+ * has grown to the number of matches played at once, lending and returning
+ * allocate nothing.
+ * 
+ * The boards and move histories of the games are not arrays of their own: they
+ * are packed side by side into chunks of up to MAX_CHUNK_GAMES games and about
+ * CHUNK_BYTES, one long array and one int array per chunk, which every game of
+ * the chunk reads and writes at its own offset. A chunk of 100x100 games thus
+ * holds a couple of dozen of them, not a thousand. Tens of thousands of games then cost a few dozen arrays instead of
+ * three small arrays each, and the GC has fewer objects to trace. The pool grows
+ * a chunk at a time up to its capacity; beyond it, games are created unpooled and
+ * left to the GC when returned.
+ * 
+ * Games are lent and returned under the pool's lock, which is held for a few
+ * instructions, and for clearing the board of a returned game. A game itself is
+ * still meant for one thread at a time, and must not be used after it has been
+ * returned.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GamePool {
+    public static final int MAX_CHUNK_GAMES = 1024;
+    public static final int CHUNK_BYTES = 1 << 20;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    
+    private final int size;
+    private final int winLength;
+    private final int capacity;
+    private final int boardLongs;
+    private final int cells;
+    private final int chunkGames;
+    // The games created so far, by slot, and the chunks holding their boards and moves.
+    private TicTacToeGame[] games = new TicTacToeGame[0];
+    private final long[][] boardChunks;
+    private final int[][] moveChunks;
+    private int created;
+    // Slots of the games that have been returned, as a stack, and which games are lent.
+    private int[] free = new int[0];
+    private int freeCount;
+    private boolean[] lent = new boolean[0];
+    private int lentCount;
+    private long unpooled;
+    
+    /**
+     * Creates an empty pool of games on a size x size board with winLength in a row,
+     * holding up to DEFAULT_CAPACITY of them.
+     */
+    public GamePool(int size, int winLength) {
+        this(size, winLength, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates an empty pool of games on a size x size board with winLength in a row,
+     * holding up to capacity of them.
+     */
+    public GamePool(int size, int winLength, int capacity) {
+        if (size < 1 || size > TicTacToeGame.MAX_SIZE || winLength < 1 || winLength > size)
+            throw new IllegalArgumentException("Bad board: " + size + "x" + size + ", " + winLength + " in a row");
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.size = size;
+        this.winLength = winLength;
+        this.capacity = capacity;
+        boardLongs = 2 * TicTacToeGame.words(size);
+        cells = size * size;
+        int gameBytes = cells * Integer.BYTES + boardLongs * Long.BYTES;
+        chunkGames = Math.max(1, Math.min(MAX_CHUNK_GAMES, CHUNK_BYTES / gameBytes));
+        int chunks = (capacity + chunkGames - 1) / chunkGames;
+        boardChunks = new long[chunks][];
+        moveChunks = new int[chunks][];
+    }
+    
+    /**
+     * Lends out an empty game, with the given player to start.
+     */
+    public TicTacToeGame acquire(String startingPlayer) {
+        TicTacToeGame game;
+        synchronized (this) {
+            if (freeCount > 0) {
+                game = games[free[--freeCount]];
+            } else if (created < capacity) {
+                game = create(created++);
+            } else {
+                unpooled++;
+                game = null;
+            }
+            if (game != null) {
+                lent[game.poolSlot] = true;
+                lentCount++;
+            }
+        }
+        if (game == null)
+            return new TicTacToeGame(size, winLength, startingPlayer);
+        game.initializeGame(startingPlayer);
+        return game;
+    }
+    
+    /**
+     * Takes back a game lent by this pool, resetting it. Games of other pools, or created
+     * unpooled, are left alone.
+     * @throws IllegalStateException if the game has already been returned.
+     */
+    public void release(TicTacToeGame game) {
+        int slot = game.poolSlot;
+        synchronized (this) {
+            if (slot < 0 || slot >= created || games[slot] != game)
+                return;
+            if (!lent[slot])
+                throw new IllegalStateException("Game returned twice");
+            // Clearing a board takes a few words, so it is done here, where no one else can have the game.
+            game.initializeGame(TicTacToeGame.PLAYER_X);
+            lent[slot] = false;
+            lentCount--;
+            free[freeCount++] = slot;
+        }
+    }
+    
+    /**
+     * Creates the game of the given slot, and its chunk if it is the chunk's first.
+     */
+    private TicTacToeGame create(int slot) {
+        if (slot == games.length) {
+            // The slot arrays grow like the chunks, so that a pool costs little until it is used.
+            int length = Math.min(capacity, slot + chunkGames);
+            games = Arrays.copyOf(games, length);
+            free = Arrays.copyOf(free, length);
+            lent = Arrays.copyOf(lent, length);
+        }
+        int chunk = slot / chunkGames;
+        int offset = slot % chunkGames;
+        if (boardChunks[chunk] == null) {
+            int games = Math.min(chunkGames, capacity - chunk * chunkGames);
+            boardChunks[chunk] = new long[games * boardLongs];
+            moveChunks[chunk] = new int[games * cells];
+        }
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X, boardChunks[chunk],
+                                               offset * boardLongs, moveChunks[chunk], offset * cells, slot);
+        games[slot] = game;
+        return game;
+    }
+    
+    /**
+     * Returns the number of games lent out and not yet returned.
+     */
+    public synchronized int getLent() {
+        return lentCount;
+    }
+    
+    /**
+     * Returns the number of games the pool holds, lent or not.
+     */
+    public synchronized int getCreated() {
+        return created;
+    }
+    
+    /**
+     * Returns the number of games created unpooled because the pool was at capacity.
+     */
+    public synchronized long getUnpooled() {
+        return unpooled;
+    }
+    
+    /**
+     * Returns the number of rows (and columns) of the pool's boards.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the win length of the pool's games.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+}
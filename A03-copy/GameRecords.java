@@ -0,0 +1,560 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and writes files of game records, in a compact binary form
+ * for exchanging millions of games and in a text form for people, both streamed
+ * through NIO buffers. All the games of a file are of one board variant.
+ * 
+ * A binary file starts with the bytes TTTR, the format version, the size and the
+ * win length. Each game follows as a varint holding
+ * (moveCount << 3 | result << 1 | 1 if O started), where result is 0 for a game
+ * that is not over, 1 if X won, 2 if O won and 3 for a tie, and then its moves as
+ * cell indexes (row * size + col) of 4 bits, two to a byte, on boards of up to 16
+ * cells, of 8 bits on boards of up to 256 cells, and of 16 bits above. A classic
+ * game of nine moves takes 6 bytes.
+ * 
+ * A text file starts with the line "# tictactoe size winLength", and each game is
+ * a line of the starting player, the moves as row,col, and the result (X, O, T,
+ * or * if the game is not over), separated by spaces: X 1,1 0,0 2,2 0,2 0,1 2,1 1,0 1,2 2,0 T.
+ * 
+ * A Reader is a cursor over the games of a file: next() decodes the next game into
+ * arrays it reuses, so reading allocates nothing per game, and replay plays the
+ * current game into a TicTacToeGame to check that its moves and result are legal.
+ * 
+ * From the command line:
+ *   java GameRecords convert in out [text|binary] rewrites a file in the given form;
+ *   java GameRecords check file replays every game of a file and counts the illegal ones.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public final class GameRecords {
+    public static final int VERSION = 1;
+    public static final int NOT_OVER = 0;
+    public static final int X_WON = 1;
+    public static final int O_WON = 2;
+    public static final int TIE = 3;
+    
+    private static final byte[] MAGIC = {'T', 'T', 'T', 'R'};
+    private static final String TEXT_HEADER = "# tictactoe ";
+    private static final int BUFFER = 1 << 16;
+    private static final byte[] RESULT_CHARS = {'*', 'X', 'O', 'T'};
+    
+    /**
+     * The forms a file of records can take.
+     */
+    public enum Format {
+        BINARY, TEXT
+    }
+    
+    private GameRecords() {
+    }
+    
+    /**
+     * Returns the result code of a game's winner: X, O, T, or EMPTY for a game not over.
+     */
+    public static int resultOf(String winner) {
+        return winner.equals(TicTacToeGame.PLAYER_X) ? X_WON : winner.equals(TicTacToeGame.PLAYER_O) ? O_WON
+             : winner.equals(TicTacToeGame.TIE) ? TIE : NOT_OVER;
+    }
+    
+    /**
+     * Returns the number of bits a move takes in the binary form on a board of the given size.
+     */
+    private static int moveBits(int size) {
+        int cells = size * size;
+        return cells <= 16 ? 4 : cells <= 256 ? 8 : 16;
+    }
+    
+    /**
+     * Returns the longest a game can be in the given form on a board of the given size.
+     */
+    private static int maxRecord(Format format, int size) {
+        int cells = size * size;
+        // The text form spends at most "rr,cc " per move.
+        return format == Format.BINARY ? 5 + (cells * moveBits(size) + 7) / 8 : 8 + cells * 8;
+    }
+    
+    /**
+     * Writes games to a channel. The channel is written in large blocks, and the
+     * last when the writer is flushed or closed.
+     */
+    public static final class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final Format format;
+        private final int size;
+        private final int bits;
+        private final ByteBuffer out;
+        private final int maxRecord;
+        private final int[] scratch;
+        private long games;
+        
+        /**
+         * Starts a file of games on a size x size board with winLength in a row.
+         */
+        public Writer(WritableByteChannel channel, Format format, int size, int winLength) throws IOException {
+            if (size < 1 || size > TicTacToeGame.MAX_SIZE || winLength < 1 || winLength > size)
+                throw new IllegalArgumentException("Bad board: " + size + "x" + size + ", " + winLength + " in a row");
+            this.channel = channel;
+            this.format = format;
+            this.size = size;
+            bits = moveBits(size);
+            maxRecord = maxRecord(format, size);
+            out = ByteBuffer.allocateDirect(Math.max(BUFFER, 2 * maxRecord));
+            scratch = new int[size * size];
+            if (format == Format.BINARY) {
+                out.put(MAGIC).put((byte) VERSION).put((byte) size).put((byte) winLength);
+            } else {
+                putAscii(TEXT_HEADER);
+                putNumber(size);
+                out.put((byte) ' ');
+                putNumber(winLength);
+                out.put((byte) '\n');
+            }
+        }
+        
+        /**
+         * Writes the moves of a game and its result, as it stands. The game is only read.
+         */
+        public void write(TicTacToeGame game) throws IOException {
+            if (game.getSize() != size)
+                throw new IllegalArgumentException("Game is " + game.getSize() + "x" + game.getSize());
+            int count = game.getMoveCount();
+            for (int i = 0; i < count; i++)
+                scratch[i] = game.getMove(i);
+            // The starting player made the first move; without one, it is the player to move.
+            String starter = count == 0 ? game.getCurrentPlayer()
+                           : game.getCell(scratch[0] / size, scratch[0] % size);
+            write(starter, scratch, count, resultOf(game.getWinner()));
+        }
+        
+        /**
+         * Writes a game given by its starting player, its first count moves as cell
+         * indexes, and its result code. The moves are not checked.
+         */
+        public void write(String startingPlayer, int[] moves, int count, int result) throws IOException {
+            if (out.remaining() < maxRecord)
+                flush();
+            boolean oStarts = startingPlayer.equals(TicTacToeGame.PLAYER_O);
+            if (format == Format.BINARY) {
+                putVarint((long) count << 3 | result << 1 | (oStarts ? 1 : 0));
+                if (bits == 4) {
+                    int i = 0;
+                    for (; i + 1 < count; i += 2)
+                        out.put((byte) (moves[i] | moves[i + 1] << 4));
+                    if (i < count)
+                        out.put((byte) moves[i]);
+                } else if (bits == 8) {
+                    for (int i = 0; i < count; i++)
+                        out.put((byte) moves[i]);
+                } else {
+                    for (int i = 0; i < count; i++)
+                        out.putShort((short) moves[i]);
+                }
+            } else {
+                out.put((byte) (oStarts ? 'O' : 'X'));
+                for (int i = 0; i < count; i++) {
+                    out.put((byte) ' ');
+                    putNumber(moves[i] / size);
+                    out.put((byte) ',');
+                    putNumber(moves[i] % size);
+                }
+                out.put((byte) ' ').put(RESULT_CHARS[result]).put((byte) '\n');
+            }
+            games++;
+        }
+        
+        /**
+         * Returns the number of games written.
+         */
+        public long getGames() {
+            return games;
+        }
+        
+        /**
+         * Writes what has been buffered to the channel.
+         */
+        public void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            out.clear();
+        }
+        
+        /**
+         * Flushes and closes the channel.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+        
+        private void putVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            out.put((byte) value);
+        }
+        
+        private void putNumber(int number) {
+            if (number >= 10)
+                putNumber(number / 10);
+            out.put((byte) ('0' + number % 10));
+        }
+        
+        private void putAscii(String text) {
+            for (int i = 0; i < text.length(); i++)
+                out.put((byte) text.charAt(i));
+        }
+    }
+    
+    /**
+     * Reads the games of a channel one at a time, in either form, which it recognizes
+     * from the start of the file.
+     */
+    public static final class Reader implements Closeable {
+        private final ReadableByteChannel channel;
+        private ByteBuffer in;
+        private final Format format;
+        private final int size;
+        private final int winLength;
+        private final int bits;
+        private final int maxRecord;
+        private boolean endOfChannel;
+        private long games;
+        // The current game.
+        private final int[] moves;
+        private int moveCount;
+        private boolean oStarts;
+        private int result;
+        
+        /**
+         * Reads the header of the file on the channel.
+         * @throws IOException if the file is of neither form.
+         */
+        public Reader(ReadableByteChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = ByteBuffer.allocate(BUFFER);
+            header.flip();
+            in = header;
+            fill(TEXT_HEADER.length() + 8);
+            if (in.remaining() >= 7 && in.get(0) == MAGIC[0] && in.get(1) == MAGIC[1] && in.get(2) == MAGIC[2]
+                && in.get(3) == MAGIC[3]) {
+                if (in.get(4) != VERSION)
+                    throw new IOException("Unknown record version " + in.get(4));
+                format = Format.BINARY;
+                size = in.get(5) & 0xFF;
+                winLength = in.get(6) & 0xFF;
+                in.position(7);
+            } else if (startsWith(TEXT_HEADER)) {
+                format = Format.TEXT;
+                in.position(TEXT_HEADER.length());
+                size = getNumber();
+                winLength = getNumber();
+                skipLine();
+            } else {
+                throw new IOException("Not a game record file");
+            }
+            if (size < 1 || size > TicTacToeGame.MAX_SIZE || winLength < 1 || winLength > size)
+                throw new IOException("Bad board in header: " + size + "x" + size + ", " + winLength + " in a row");
+            bits = moveBits(size);
+            maxRecord = maxRecord(format, size);
+            moves = new int[size * size];
+            if (in.capacity() < 2 * maxRecord) {
+                // A text game on a board above 90x90 can be longer than the buffer the header was read into.
+                ByteBuffer larger = ByteBuffer.allocate(2 * maxRecord);
+                larger.put(in).flip();
+                in = larger;
+            }
+        }
+        
+        /**
+         * Returns the form of the file.
+         */
+        public Format getFormat() {
+            return format;
+        }
+        
+        /**
+         * Returns the number of rows (and columns) of the boards in the file.
+         */
+        public int getSize() {
+            return size;
+        }
+        
+        /**
+         * Returns the win length of the games in the file.
+         */
+        public int getWinLength() {
+            return winLength;
+        }
+        
+        /**
+         * Decodes the next game, and returns false at the end of the file.
+         * @throws IOException if the game is cut short or malformed.
+         */
+        public boolean next() throws IOException {
+            if (in.remaining() < maxRecord)
+                fill(maxRecord);
+            if (!in.hasRemaining())
+                return false;
+            if (format == Format.BINARY)
+                nextBinary();
+            else
+                nextText();
+            games++;
+            return true;
+        }
+        
+        /**
+         * Returns the number of games read so far.
+         */
+        public long getGames() {
+            return games;
+        }
+        
+        /**
+         * Returns the player who started the current game.
+         */
+        public String getStartingPlayer() {
+            return oStarts ? TicTacToeGame.PLAYER_O : TicTacToeGame.PLAYER_X;
+        }
+        
+        /**
+         * Returns the number of moves of the current game.
+         */
+        public int getMoveCount() {
+            return moveCount;
+        }
+        
+        /**
+         * Returns the given move of the current game, as a cell index.
+         */
+        public int getMove(int i) {
+            if (i < 0 || i >= moveCount)
+                throw new IndexOutOfBoundsException("Move " + i + " of " + moveCount);
+            return moves[i];
+        }
+        
+        /**
+         * Returns the result code of the current game.
+         */
+        public int getResult() {
+            return result;
+        }
+        
+        /**
+         * Plays the current game into the given game, from its start, and returns whether
+         * every move was legal and the game ended as recorded. The game is left at the
+         * last legal move.
+         */
+        public boolean replay(TicTacToeGame game) {
+            if (game.getSize() != size || game.getWinLength() != winLength)
+                throw new IllegalArgumentException("Game is not " + size + "x" + size + ", " + winLength + " in a row");
+            game.initializeGame(getStartingPlayer());
+            for (int i = 0; i < moveCount; i++) {
+                int cell = moves[i];
+                if (game.isGameOver() || !game.makeMove(cell / size, cell % size))
+                    return false;
+                if (!game.isGameOver())
+                    game.switchPlayer();
+            }
+            return resultOf(game.getWinner()) == result;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+        
+        private void nextBinary() throws IOException {
+            long header = getVarint();
+            long count = header >>> 3;
+            if (count > moves.length)
+                throw new IOException("Game " + games + " has " + count + " moves");
+            moveCount = (int) count;
+            result = (int) (header >>> 1) & 3;
+            oStarts = (header & 1) != 0;
+            if (in.remaining() < (moveCount * bits + 7) / 8)
+                throw new EOFException("Game " + games + " is cut short");
+            int cells = moves.length;
+            if (bits == 4) {
+                int i = 0;
+                for (; i + 1 < moveCount; i += 2) {
+                    int pair = in.get() & 0xFF;
+                    moves[i] = pair & 0xF;
+                    moves[i + 1] = pair >>> 4;
+                }
+                if (i < moveCount)
+                    moves[i] = in.get() & 0xF;
+            } else if (bits == 8) {
+                for (int i = 0; i < moveCount; i++)
+                    moves[i] = in.get() & 0xFF;
+            } else {
+                for (int i = 0; i < moveCount; i++)
+                    moves[i] = in.getShort() & 0xFFFF;
+            }
+            for (int i = 0; i < moveCount; i++) {
+                if (moves[i] >= cells)
+                    throw new IOException("Game " + games + " has a move off the board: " + moves[i]);
+            }
+        }
+        
+        private void nextText() throws IOException {
+            byte starter = in.get();
+            if (starter != 'X' && starter != 'O')
+                throw new IOException("Game " + games + " has no starting player");
+            oStarts = starter == 'O';
+            moveCount = 0;
+            while (true) {
+                expect(' ');
+                byte next = peek();
+                if (next >= '0' && next <= '9') {
+                    int row = getNumber();
+                    expect(',');
+                    int col = getNumber();
+                    if (row >= size || col >= size || moveCount == moves.length)
+                        throw new IOException("Game " + games + " has a move off the board: " + row + "," + col);
+                    moves[moveCount++] = row * size + col;
+                } else {
+                    in.get();
+                    result = next == 'X' ? X_WON : next == 'O' ? O_WON : next == 'T' ? TIE : next == '*' ? NOT_OVER : -1;
+                    if (result < 0)
+                        throw new IOException("Game " + games + " has no result");
+                    skipLine();
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Reads until at least wanted bytes are buffered, the buffer is full or the channel ends.
+         */
+        private void fill(int wanted) throws IOException {
+            in.compact();
+            while (in.position() < wanted && in.hasRemaining() && !endOfChannel) {
+                if (channel.read(in) < 0)
+                    endOfChannel = true;
+            }
+            in.flip();
+        }
+        
+        private boolean startsWith(String text) {
+            if (in.remaining() < text.length())
+                return false;
+            for (int i = 0; i < text.length(); i++) {
+                if (in.get(i) != text.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+        
+        private byte peek() throws IOException {
+            if (!in.hasRemaining())
+                throw new EOFException("Game " + games + " is cut short");
+            return in.get(in.position());
+        }
+        
+        private void expect(char c) throws IOException {
+            if (peek() != c)
+                throw new IOException("Game " + games + ": expected '" + c + "'");
+            in.get();
+        }
+        
+        private int getNumber() throws IOException {
+            while (peek() == ' ')
+                in.get();
+            int value = 0;
+            int digits = 0;
+            byte b;
+            while (in.hasRemaining() && (b = in.get(in.position())) >= '0' && b <= '9' && digits < 4) {
+                value = value * 10 + (b - '0');
+                digits++;
+                in.get();
+            }
+            if (digits == 0)
+                throw new IOException("Game " + games + ": expected a number");
+            return value;
+        }
+        
+        private void skipLine() throws IOException {
+            while (in.hasRemaining()) {
+                if (in.get() == '\n')
+                    return;
+            }
+        }
+        
+        private long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!in.hasRemaining())
+                    throw new EOFException("Game " + games + " is cut short");
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Varint too long");
+        }
+    }
+    
+    /**
+     * Opens a file of records for reading.
+     */
+    public static Reader read(Path path) throws IOException {
+        return new Reader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+    
+    /**
+     * Creates, or replaces, a file of records in the given form.
+     */
+    public static Writer write(Path path, Format format, int size, int winLength) throws IOException {
+        return new Writer(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                           StandardOpenOption.TRUNCATE_EXISTING), format, size, winLength);
+    }
+    
+    /**
+     * Converts or checks files of records from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("convert")) {
+            long start = System.nanoTime();
+            try (Reader reader = read(Paths.get(args[1]));
+                 Writer writer = write(Paths.get(args[2]), args.length > 3 && args[3].equals("text") ? Format.TEXT
+                                       : Format.BINARY, reader.getSize(), reader.getWinLength())) {
+                while (reader.next())
+                    writer.write(reader.getStartingPlayer(), reader.moves, reader.getMoveCount(), reader.getResult());
+                System.out.printf("%d games in %.2f s%n", writer.getGames(), (System.nanoTime() - start) / 1e9);
+            }
+        } else if (args.length >= 2 && args[0].equals("check")) {
+            long start = System.nanoTime();
+            try (Reader reader = read(Paths.get(args[1]))) {
+                TicTacToeGame game = new TicTacToeGame(reader.getSize(), reader.getWinLength(), TicTacToeGame.PLAYER_X);
+                long illegal = 0;
+                while (reader.next()) {
+                    if (!reader.replay(game))
+                        illegal++;
+                }
+                System.out.printf("%d games, %d illegal, in %.2f s%n", reader.getGames(), illegal,
+                                  (System.nanoTime() - start) / 1e9);
+            }
+        } else {
+            System.err.println("Usage: java GameRecords convert in out [text|binary] | check file");
+        }
+    }
+}
@@ -0,0 +1,399 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hosts networked matches. Every connection is served by its own
+ * thread, a virtual thread when the JVM supports them, so thousands of mostly
+ * idle connections cost little. Players who ask to play the same board size and
+ * win length are paired in the order they arrive, and each pair plays in a
+ * GameSession, with a game lent by the GamePool of its variant; a pool none of
+ * whose games are in play is let go, so that asking for many variants leaves
+ * nothing behind once those matches are over. Any number of
+ * other connections may watch a match through its SpectatorFeed.
+ * 
+ * The protocol is one ASCII line per message, with space-separated fields.
+ * Client to server:
+ *   HELLO name, PLAY size winLength, MOVE row col, WATCH [match], QUIT.
+ * Server to client:
+ *   WELCOME, WAIT, START size winLength symbol opponentName startingPlayer match,
+ *   MOVED symbol row col, OVER winner (X, O, or T for tie), LEFT, ERROR message.
+ * A PLAY while waiting replaces the variant waited for; one while playing is refused.
+ * WATCH follows the given match, or the latest one to start, until it ends:
+ *   WATCHING match size winLength xName oName startingPlayer, then BOARD moveCount
+ *   and a ROW cells line per row (X, O, or '.' for empty), again whenever the
+ *   spectator has fallen too far behind, then MOVED lines and OVER or LEFT.
+ *   The connection reads no requests while it watches.
+ * 
+ * From the command line: java GameServer [port].
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 4242;
+    
+    public static final String HELLO = "HELLO";
+    public static final String PLAY = "PLAY";
+    public static final String MOVE = "MOVE";
+    public static final String WATCH = "WATCH";
+    public static final String QUIT = "QUIT";
+    public static final String WELCOME = "WELCOME";
+    public static final String WAIT = "WAIT";
+    public static final String START = "START";
+    public static final String MOVED = "MOVED";
+    public static final String OVER = "OVER";
+    public static final String LEFT = "LEFT";
+    public static final String ERROR = "ERROR";
+    public static final String WATCHING = "WATCHING";
+    public static final String BOARD = "BOARD";
+    public static final String ROW = "ROW";
+    // Longer player names are cut to this; any line must also fit in LineChannel.MAX_LINE.
+    public static final int MAX_NAME = 32;
+    
+    private static final int BACKLOG = 4096;
+    
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService executor;
+    private final Thread acceptor;
+    // Players waiting for an opponent, keyed by "size:winLength".
+    private final Map<String, Connection> waiting = new HashMap<>();
+    // Games lent to sessions, by variant as for waiting.
+    private final Map<String, GamePool> pools = new ConcurrentHashMap<>();
+    // Matches being played, by number, for spectators.
+    private final Map<Integer, GameSession> matches = new ConcurrentHashMap<>();
+    private volatile GameSession latest;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger spectators = new AtomicInteger();
+    private final AtomicLong moves = new AtomicLong();
+    private int sessionsStarted;
+    
+    /**
+     * Opens a server on the given port; 0 picks a free port. Call start to accept connections.
+     */
+    public GameServer(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        executor = newThreadPerTaskExecutor();
+        acceptor = new Thread(this::acceptLoop, "GameServer-acceptor");
+    }
+    
+    /**
+     * Returns an executor that runs every task on a new virtual thread when the JVM
+     * supports them (Java 21 and later), or on a pooled platform thread otherwise.
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /**
+     * Starts accepting connections in the background.
+     */
+    public void start() {
+        acceptor.start();
+    }
+    
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Returns the number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+    
+    /**
+     * Returns the number of matches being played.
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+    
+    /**
+     * Returns the number of connections watching a match.
+     */
+    public int getSpectatorCount() {
+        return spectators.get();
+    }
+    
+    /**
+     * Returns the number of moves played on this server.
+     */
+    public long getMoveCount() {
+        return moves.get();
+    }
+    
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Accepts connections until the server is closed, giving each its own thread.
+     */
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(new LineChannel(channel));
+                executor.execute(connection::run);
+            } catch (IOException e) {
+                if (serverChannel.isOpen())
+                    System.err.println("GameServer: accept failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Pairs the connection with a waiting player for the same variant, or makes it wait.
+     * A connection waits for one variant at a time: asking again replaces its request.
+     * Both players are given the session under the waiting lock, where a player that
+     * disconnects looks for it, so that one leaving now still ends the match.
+     */
+    private void matchmake(Connection connection, int size, int winLength) {
+        String key = size + ":" + winLength;
+        GameSession session;
+        synchronized (waiting) {
+            if (connection.session != null) {
+                connection.send(ERROR + " Already playing");
+                return;
+            }
+            waiting.values().removeIf(waiter -> waiter == connection);
+            Connection opponent = waiting.remove(key);
+            if (opponent == null || !opponent.channel.isOpen()) {
+                waiting.put(key, connection);
+                connection.send(WAIT);
+                return;
+            }
+            // Alternate the starting player from one match to the next.
+            int match = ++sessionsStarted;
+            String startingPlayer = (match & 1) == 1 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+            GamePool pool = pools.get(key);
+            if (pool == null)
+                pool = pools.computeIfAbsent(key, k -> new GamePool(size, winLength));
+            session = new GameSession(this, match, pool, opponent, connection, startingPlayer);
+            opponent.session = session;
+            connection.session = session;
+            sessions.incrementAndGet();
+            matches.put(match, session);
+            latest = session;
+        }
+        session.start();
+    }
+    
+    /**
+     * Removes the connection from the waiting players, if it is there, and returns
+     * the session it was given, if any.
+     */
+    private GameSession stopWaiting(Connection connection) {
+        synchronized (waiting) {
+            waiting.values().removeIf(waiter -> waiter == connection);
+            return connection.session;
+        }
+    }
+    
+    /**
+     * Called by a session when it has ended.
+     */
+    void sessionEnded(GameSession session) {
+        sessions.decrementAndGet();
+        matches.remove(session.getMatch());
+        // A match starting meanwhile may still take a game from the pool; it is returned to it all the same.
+        GamePool pool = session.getPool();
+        if (pool.getLent() == 0)
+            pools.remove(pool.getSize() + ":" + pool.getWinLength(), pool);
+    }
+    
+    /**
+     * Called by a session for every move played.
+     */
+    void moveMade() {
+        moves.incrementAndGet();
+    }
+    
+    /**
+     * One client connection, served by its own thread.
+     */
+    class Connection {
+        final LineChannel channel;
+        volatile String name = "Anonymous";
+        volatile GameSession session;
+        
+        Connection(LineChannel channel) {
+            this.channel = channel;
+        }
+        
+        /**
+         * Sends a line to the client; a failed send closes the connection.
+         */
+        void send(String line) {
+            try {
+                channel.writeLine(line);
+            } catch (IOException e) {
+                closeQuietly();
+            }
+        }
+        
+        /**
+         * Reads and handles requests until the client disconnects.
+         */
+        void run() {
+            connections.incrementAndGet();
+            try {
+                send(WELCOME);
+                String line;
+                while ((line = channel.readLine()) != null) {
+                    if (!handle(line))
+                        break;
+                }
+            } catch (IOException e) {
+                // The client went away; clean up below.
+            } finally {
+                GameSession current = stopWaiting(this);
+                if (current != null)
+                    current.leave(this);
+                closeQuietly();
+                connections.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Handles one request line and returns false if the client asked to quit.
+         */
+        private boolean handle(String line) {
+            String[] fields = line.trim().split(" +");
+            try {
+                switch (fields[0]) {
+                    case HELLO:
+                        if (fields.length > 1)
+                            name = shorten(fields[1]);
+                        break;
+                    case PLAY:
+                        if (session != null) {
+                            send(ERROR + " Already playing");
+                        } else {
+                            int size = Integer.parseInt(fields[1]);
+                            int winLength = Integer.parseInt(fields[2]);
+                            if (size < 1 || size > TicTacToeGame.MAX_SIZE || winLength < 1 || winLength > size)
+                                send(ERROR + " Bad board size");
+                            else
+                                matchmake(this, size, winLength);
+                        }
+                        break;
+                    case MOVE:
+                        GameSession current = session;
+                        if (current == null)
+                            send(ERROR + " Not playing");
+                        else
+                            current.move(this, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                        break;
+                    case WATCH:
+                        GameSession watched = fields.length > 1 ? matches.get(Integer.parseInt(fields[1])) : latest;
+                        if (session != null)
+                            send(ERROR + " Already playing");
+                        else if (watched == null)
+                            send(ERROR + " No such match");
+                        else
+                            return watch(watched);
+                        break;
+                    case QUIT:
+                        return false;
+                    default:
+                        send(ERROR + " Unknown command " + shorten(fields[0]));
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                send(ERROR + " Malformed " + shorten(fields[0]));
+            }
+            return true;
+        }
+        
+        /**
+         * Returns the text cut to MAX_NAME characters, so that echoing it back fits in a line.
+         */
+        private String shorten(String text) {
+            return text.length() > MAX_NAME ? text.substring(0, MAX_NAME) : text;
+        }
+        
+        /**
+         * Streams a match to this connection until it ends, and returns false if the
+         * connection failed meanwhile. A pending PLAY request is given up.
+         */
+        private boolean watch(GameSession match) {
+            stopWaiting(this);
+            spectators.incrementAndGet();
+            try {
+                send(match.describe());
+                match.getFeed().stream(channel);
+                return true;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                spectators.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Closes the connection, ignoring errors.
+         */
+        void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+    
+    /**
+     * Runs a server from the command line until the process is stopped.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        server.start();
+        Metrics.export();
+        System.out.println("Tic Tac Toe server listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * This class is one networked match between two connections of a GameServer.
+ * It owns the TicTacToeGame, checks that each move comes from the player whose
+ * turn it is, and sends every move and the result to both players and to its
+ * SpectatorFeed. Moves are handled one at a time under the session's lock.
+ * The game is lent by a GamePool and returned to it when the match ends.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class GameSession {
+    private final GameServer server;
+    private final int match;
+    private final GamePool pool;
+    private final TicTacToeGame game;
+    private final SpectatorFeed feed;
+    private final GameServer.Connection x;
+    private final GameServer.Connection o;
+    private final String startingPlayer;
+    private boolean ended;
+    
+    /**
+     * Creates match number match, on a game of the pool's variant, where x plays X and o plays O.
+     */
+    GameSession(GameServer server, int match, GamePool pool, GameServer.Connection x, GameServer.Connection o,
+                String startingPlayer) {
+        this.server = server;
+        this.match = match;
+        this.x = x;
+        this.o = o;
+        this.startingPlayer = startingPlayer;
+        this.pool = pool;
+        game = pool.acquire(startingPlayer);
+        feed = new SpectatorFeed(pool.getSize());
+    }
+    
+    /**
+     * Returns the number of this match on its server.
+     */
+    int getMatch() {
+        return match;
+    }
+    
+    /**
+     * Returns the pool the match's game was lent by.
+     */
+    GamePool getPool() {
+        return pool;
+    }
+    
+    /**
+     * Returns the feed that spectators of this match read.
+     */
+    SpectatorFeed getFeed() {
+        return feed;
+    }
+    
+    /**
+     * Returns the WATCHING line that introduces this match to a spectator.
+     */
+    String describe() {
+        return GameServer.WATCHING + " " + match + " " + pool.getSize() + " " + pool.getWinLength() + " "
+               + x.name + " " + o.name + " " + startingPlayer;
+    }
+    
+    /**
+     * Tells both players that the match has started, unless one has already left it.
+     */
+    synchronized void start() {
+        if (ended)
+            return;
+        String variant = GameServer.START + " " + pool.getSize() + " " + pool.getWinLength() + " ";
+        x.send(variant + TicTacToeGame.PLAYER_X + " " + o.name + " " + startingPlayer + " " + match);
+        o.send(variant + TicTacToeGame.PLAYER_O + " " + x.name + " " + startingPlayer + " " + match);
+    }
+    
+    /**
+     * Plays a move for the given connection if it is its turn and the cell is free,
+     * and tells both players; otherwise sends an error to the mover.
+     */
+    synchronized void move(GameServer.Connection from, int row, int col) {
+        long start = System.nanoTime();
+        String symbol = from == x ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+        int size = game.getSize();
+        if (ended || game.isGameOver()) {
+            from.send(GameServer.ERROR + " Game over");
+        } else if (!game.getCurrentPlayer().equals(symbol)) {
+            from.send(GameServer.ERROR + " Not your turn");
+        } else if (row < 0 || row >= size || col < 0 || col >= size || !game.makeMove(row, col)) {
+            from.send(GameServer.ERROR + " Illegal move");
+        } else {
+            server.moveMade();
+            if (Metrics.ENABLED)
+                Metrics.moveMade();
+            String moved = GameServer.MOVED + " " + symbol + " " + row + " " + col;
+            x.send(moved);
+            o.send(moved);
+            feed.publishMove(row, col, symbol);
+            if (game.isGameOver()) {
+                String winner = game.getWinner();
+                if (Metrics.ENABLED)
+                    Metrics.gameCompleted();
+                // The players are detached before they hear of the end, so that they can play again at once.
+                end();
+                String over = GameServer.OVER + " " + winner;
+                x.send(over);
+                o.send(over);
+                feed.publishOver(winner);
+            } else {
+                game.switchPlayer();
+            }
+            Metrics.moveHandled(start, size);
+        }
+    }
+    
+    /**
+     * Ends the match early because the given connection left, telling the other player.
+     */
+    synchronized void leave(GameServer.Connection from) {
+        if (ended)
+            return;
+        end();
+        (from == x ? o : x).send(GameServer.LEFT);
+        feed.publishLeft();
+    }
+    
+    /**
+     * Detaches both players so that they can ask for a new match, and returns the game,
+     * which is not touched once ended is set.
+     */
+    private void end() {
+        ended = true;
+        pool.release(game);
+        x.session = null;
+        o.session = null;
+        server.sessionEnded(this);
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.SplittableRandom;
+
+/**
+ * A player that wins when it can, otherwise blocks the opponent's winning move,
+ * otherwise takes the centre, and otherwise plays next to its own marks, falling
+ * back to a random empty cell.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class HeuristicPlayer implements Player {
+    private final RandomPlayer fallback;
+    
+    /**
+     * Constructs a heuristic player with a random seed for its fallback moves.
+     */
+    public HeuristicPlayer() {
+        fallback = new RandomPlayer();
+    }
+    
+    /**
+     * Constructs a heuristic player whose fallback moves are reproducible from the given seed.
+     */
+    public HeuristicPlayer(long seed) {
+        fallback = new RandomPlayer(seed);
+    }
+    
+    @Override
+    public int chooseMove(TicTacToeGame game) {
+        int size = game.getSize();
+        String me = game.getCurrentPlayer();
+        String opponent = me.equals(TicTacToeGame.PLAYER_X) ? TicTacToeGame.PLAYER_O : TicTacToeGame.PLAYER_X;
+        int block = -1;
+        int adjacent = -1;
+        for (int cell = 0; cell < size * size; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            if (!game.isEmpty(row, col))
+                continue;
+            if (game.isWinningMove(row, col, me))
+                return cell;
+            if (block < 0 && game.isWinningMove(row, col, opponent))
+                block = cell;
+            if (adjacent < 0 && nextTo(game, row, col, me))
+                adjacent = cell;
+        }
+        if (block >= 0)
+            return block;
+        int middle = size / 2;
+        if (game.isEmpty(middle, middle))
+            return middle * size + middle;
+        if (adjacent >= 0)
+            return adjacent;
+        return fallback.chooseMove(game);
+    }
+    
+    /**
+     * Returns whether one of the eight neighbours of (row, col) holds the given player's mark.
+     */
+    private static boolean nextTo(TicTacToeGame game, int row, int col, String player) {
+        int size = game.getSize();
+        for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                if (game.getCell(r, c).equals(player))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
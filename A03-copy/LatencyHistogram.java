@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts durations in nanoseconds into buckets whose width grows with
+ * the value, in the style of HdrHistogram: values below 128 ns have a bucket of
+ * their own, and every range from 2^k to 2^(k+1) above that is split into 64
+ * equal buckets, so any recorded value, from nanoseconds to hours, is known to
+ * within about 1.6%. Recording is an array index computation and two atomic
+ * additions, without locks or allocation, and may happen on many threads at once.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class LatencyHistogram {
+    // Values below 2^SUB_BITS have exact buckets; each power of two above is split in SUB_BUCKETS.
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << (SUB_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Records one duration; negative durations count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get())
+            max.accumulateAndGet(value, Math::max);
+    }
+    
+    /**
+     * Records the time since startNanos, a value of System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Returns the number of durations recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /**
+     * Returns the sum of the durations recorded, in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+    
+    /**
+     * Returns the longest duration recorded, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Returns the mean duration, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+    
+    /**
+     * Returns the duration, in nanoseconds, that the given percentage (0-100) of recorded
+     * durations do not exceed, to within the width of its bucket; 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(highestValueIn(i), getMax());
+        }
+        return getMax();
+    }
+    
+    /**
+     * Forgets every recorded duration. Durations recorded at the same time may be
+     * partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0L);
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+    
+    /**
+     * Returns the bucket of a non-negative value.
+     */
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+        // The value's top SUB_BITS bits select one of SUB_BUCKETS buckets of its power of two.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+    
+    /**
+     * Returns the largest value that falls in the given bucket.
+     */
+    private static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class reads and writes the newline-terminated ASCII lines of the game
+ * protocol over a blocking SocketChannel. Reads are meant for a single thread;
+ * writes may come from any thread.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class LineChannel implements Closeable {
+    // No protocol message comes close to this; longer lines are treated as an error.
+    public static final int MAX_LINE = 256;
+    
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_LINE);
+    
+    /**
+     * Wraps a connected channel, switching it to blocking mode.
+     */
+    public LineChannel(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(true);
+        in.flip();
+    }
+    
+    /**
+     * Reads the next line, without its terminator, or returns null at end of stream.
+     * @throws IOException if the line is longer than MAX_LINE.
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    int length = i - in.position();
+                    String line = new String(in.array(), in.position(), length, StandardCharsets.US_ASCII);
+                    in.position(i + 1);
+                    return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+                }
+            }
+            in.compact();
+            if (!in.hasRemaining())
+                throw new IOException("Line too long");
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0)
+                return null;
+        }
+    }
+    
+    /**
+     * Writes one line, adding the terminator.
+     * @throws IOException if the line is longer than MAX_LINE with its terminator; nothing is written.
+     */
+    public synchronized void writeLine(String line) throws IOException {
+        if (line.length() >= MAX_LINE)
+            throw new IOException("Line too long: " + line.length() + " characters");
+        out.clear();
+        for (int i = 0; i < line.length(); i++)
+            out.put((byte) line.charAt(i));
+        out.put((byte) '\n');
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+    }
+    
+    /**
+     * Writes bytes that already hold whole lines, terminators included.
+     */
+    public synchronized void writeBytes(ByteBuffer lines) throws IOException {
+        while (lines.hasRemaining())
+            channel.write(lines);
+    }
+    
+    /**
+     * Returns whether the channel is still open.
+     */
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
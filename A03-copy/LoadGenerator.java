@@ -0,0 +1,549 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class replays streams of games against TicTacToeGame in this JVM, or
+ * against a GameServer over the network, at a fixed rate of moves, to measure
+ * throughput and latency for capacity planning.
+ * 
+ * The games are generated from a seed, or read from a GameRecords file, and kept
+ * in flat arrays. Load is spread over a number of clients, each on a thread of
+ * GameServer.newThreadPerTaskExecutor(), so virtual threads where the JVM has
+ * them: client c plays games c, c + clients, c + 2 * clients, ... of the stream,
+ * and makes moves c, c + clients, ... of the run. The schedule is open-loop: move
+ * i of the run is due at i / rate seconds after the start, whatever happened to
+ * the moves before it. A client that falls behind makes its late moves at once,
+ * and the latency of a move is counted from when it was due, not from when it was
+ * made, so that a stall is charged to every move it delays and not just to the
+ * one it happened in. The time a move took once made is reported apart, as its
+ * service time. The games, the schedule and the number of moves follow from the
+ * seed and the arguments alone, and the report prints a checksum of the games, so
+ * runs of different builds can be compared.
+ * 
+ * Against a server, each client is a pair of connections that play both sides of
+ * their matches, and a move is done when its mover hears it back. Pairs start
+ * their matches one at a time, so that the server pairs each connection with its
+ * partner; the time waiting for that is charged to the next move.
+ * 
+ * java LoadGenerator [--seed n] [--games n] [--records file] [--warmup seconds]
+ *   local|loopback|host:port movesPerSecond seconds clients [size [winLength]], where
+ *   loopback starts a GameServer in this JVM.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class LoadGenerator {
+    public static final long DEFAULT_SEED = 1;
+    public static final int DEFAULT_GAMES = 10000;
+    
+    // Results of the games of the stream, whoever played first.
+    private static final byte FIRST_WINS = 1;
+    private static final byte SECOND_WINS = 2;
+    private static final byte TIE = 3;
+    
+    private final int size;
+    private final int winLength;
+    // The moves of game g, as cells, are moves[starts[g]] to moves[starts[g + 1] - 1].
+    private final int[] moves;
+    private final int[] starts;
+    private final byte[] results;
+    private final long checksum;
+    
+    private LoadGenerator(int size, int winLength, int[] moves, int[] starts, byte[] results) {
+        this.size = size;
+        this.winLength = winLength;
+        this.moves = moves;
+        this.starts = starts;
+        this.results = results;
+        long sum = size * 31L + winLength;
+        for (int move : moves)
+            sum = sum * 31 + move;
+        for (byte result : results)
+            sum = sum * 31 + result;
+        checksum = sum;
+    }
+    
+    /**
+     * Returns a stream of games random players play to the end, the same for the same seed.
+     */
+    public static LoadGenerator synthetic(int size, int winLength, int games, long seed) {
+        if (games < 1)
+            throw new IllegalArgumentException("At least one game is needed: " + games);
+        SplittableRandom random = new SplittableRandom(seed);
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        int cells = size * size;
+        int[] free = new int[cells];
+        IntList moves = new IntList();
+        int[] starts = new int[games + 1];
+        byte[] results = new byte[games];
+        for (int g = 0; g < games; g++) {
+            starts[g] = moves.size;
+            game.initializeGame(TicTacToeGame.PLAYER_X);
+            for (int i = 0; i < cells; i++)
+                free[i] = i;
+            int left = cells;
+            while (!game.isGameOver()) {
+                int pick = random.nextInt(left);
+                int cell = free[pick];
+                free[pick] = free[--left];
+                game.makeMove(cell / size, cell % size);
+                moves.add(cell);
+                if (!game.isGameOver())
+                    game.switchPlayer();
+            }
+            results[g] = resultOf(game.getWinner(), TicTacToeGame.PLAYER_X);
+        }
+        starts[games] = moves.size;
+        return new LoadGenerator(size, winLength, moves.toArray(), starts, results);
+    }
+    
+    /**
+     * Returns the finished games of a GameRecords file, checking each by replaying it.
+     * @throws IOException if the file holds no legal finished game.
+     */
+    public static LoadGenerator recorded(String path) throws IOException {
+        try (GameRecords.Reader reader = GameRecords.read(Paths.get(path))) {
+            int size = reader.getSize();
+            int winLength = reader.getWinLength();
+            TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+            IntList moves = new IntList();
+            IntList starts = new IntList();
+            List<Byte> results = new ArrayList<>();
+            while (reader.next()) {
+                if (reader.getResult() == GameRecords.NOT_OVER || !reader.replay(game))
+                    continue;
+                starts.add(moves.size);
+                for (int i = 0; i < reader.getMoveCount(); i++)
+                    moves.add(reader.getMove(i));
+                results.add(resultOf(game.getWinner(), reader.getStartingPlayer()));
+            }
+            if (results.isEmpty())
+                throw new IOException("No legal finished game in " + path);
+            starts.add(moves.size);
+            byte[] resultArray = new byte[results.size()];
+            for (int g = 0; g < resultArray.length; g++)
+                resultArray[g] = results.get(g);
+            return new LoadGenerator(size, winLength, moves.toArray(), starts.toArray(), resultArray);
+        }
+    }
+    
+    /**
+     * Returns the result of a game as who won, the player who moved first or second.
+     */
+    private static byte resultOf(String winner, String startingPlayer) {
+        return winner.equals(TicTacToeGame.TIE) ? TIE : winner.equals(startingPlayer) ? FIRST_WINS : SECOND_WINS;
+    }
+    
+    /**
+     * Returns the number of games in the stream.
+     */
+    public int getGames() {
+        return results.length;
+    }
+    
+    /**
+     * Returns a checksum of the games, the same for the same stream.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+    
+    /**
+     * Plays rate moves a second for warmup and then for duration seconds on games in this JVM,
+     * spread over the given number of clients, and measures the moves after the warmup.
+     */
+    public Report runLocal(double rate, double warmup, double duration, int clients) throws InterruptedException {
+        Schedule schedule = new Schedule(rate, warmup, duration, clients);
+        return schedule.run(client -> {
+            TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+            int g = client % results.length;
+            int next = starts[g];
+            for (long i = client; i < schedule.total; i += clients) {
+                long due = schedule.await(i);
+                long began = System.nanoTime();
+                int cell = moves[next++];
+                game.makeMove(cell / size, cell % size);
+                boolean over = game.isGameOver();
+                if (over || next == starts[g + 1]) {
+                    schedule.gameEnded(over && next == starts[g + 1]
+                                       && resultOf(game.getWinner(), TicTacToeGame.PLAYER_X) == results[g]);
+                    g = (g + clients) % results.length;
+                    next = starts[g];
+                    game.initializeGame(TicTacToeGame.PLAYER_X);
+                } else {
+                    game.switchPlayer();
+                }
+                schedule.moveMade(i, due, began);
+            }
+        });
+    }
+    
+    /**
+     * Plays rate moves a second for warmup and then for duration seconds against the server
+     * at host:port, on the given number of pairs of connections, and measures the moves
+     * after the warmup.
+     */
+    public Report runServer(String host, int port, double rate, double warmup, double duration, int clients)
+        throws InterruptedException {
+        Schedule schedule = new Schedule(rate, warmup, duration, clients);
+        ReentrantLock matchmaking = new ReentrantLock();
+        return schedule.run(client -> {
+            LineChannel[] players = new LineChannel[2];
+            try {
+                for (int p = 0; p < 2; p++) {
+                    SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                    channel.socket().setTcpNoDelay(true);
+                    players[p] = new LineChannel(channel);
+                    expect(players[p], GameServer.WELCOME);
+                    players[p].writeLine(GameServer.HELLO + " load-" + client + (p == 0 ? "a" : "b"));
+                }
+                int g = client % results.length;
+                int next = starts[g];
+                // The player who is to move, as 0 for the first connection (X) or 1.
+                int mover = startMatch(players, matchmaking);
+                for (long i = client; i < schedule.total; i += clients) {
+                    long due = schedule.await(i);
+                    long began = System.nanoTime();
+                    int cell = moves[next++];
+                    players[mover].writeLine(GameServer.MOVE + " " + cell / size + " " + cell % size);
+                    String moved = GameServer.MOVED + " " + (mover == 0 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O)
+                                   + " " + cell / size + " " + cell % size;
+                    expect(players[mover], moved);
+                    schedule.moveMade(i, due, began);
+                    expect(players[1 - mover], moved);
+                    if (next == starts[g + 1]) {
+                        String over = players[0].readLine();
+                        expect(players[1], over);
+                        String winner = over == null ? "" : over.substring(over.indexOf(' ') + 1);
+                        // The first move of the match was made by the connection that started.
+                        int starter = (next - starts[g]) % 2 == 1 ? mover : 1 - mover;
+                        schedule.gameEnded(resultOf(winner, starter == 0 ? TicTacToeGame.PLAYER_X
+                                                                         : TicTacToeGame.PLAYER_O) == results[g]);
+                        g = (g + clients) % results.length;
+                        next = starts[g];
+                        if (i + clients < schedule.total)
+                            mover = startMatch(players, matchmaking);
+                    } else {
+                        mover = 1 - mover;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                schedule.failed(e);
+            } finally {
+                for (LineChannel player : players) {
+                    try {
+                        if (player != null)
+                            player.close();
+                    } catch (IOException e) {
+                        // Nothing more to measure on it.
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Asks the server for a match for both connections, the first waiting for the second,
+     * and returns which of them is to move first.
+     */
+    private int startMatch(LineChannel[] players, ReentrantLock matchmaking) throws IOException {
+        String play = GameServer.PLAY + " " + size + " " + winLength;
+        String start;
+        matchmaking.lock();
+        try {
+            players[0].writeLine(play);
+            expect(players[0], GameServer.WAIT);
+            players[1].writeLine(play);
+            start = players[1].readLine();
+        } finally {
+            matchmaking.unlock();
+        }
+        String started = players[0].readLine();
+        if (start == null || started == null || !start.startsWith(GameServer.START + " ")
+            || !started.startsWith(GameServer.START + " "))
+            throw new IOException("Expected START, got " + start + " / " + started);
+        // START size winLength symbol opponentName startingPlayer match
+        return start.split(" ")[5].equals(TicTacToeGame.PLAYER_X) ? 0 : 1;
+    }
+    
+    /**
+     * Reads the next line and checks that it is the expected one.
+     */
+    private static void expect(LineChannel player, String expected) throws IOException {
+        String line = player.readLine();
+        if (!expected.equals(line))
+            throw new IOException("Expected " + expected + ", got " + line);
+    }
+    
+    /**
+     * The moves of one run, when each is due, and what was measured of them.
+     */
+    private static final class Schedule {
+        final long total;
+        final long warmupMoves;
+        final double nanosPerMove;
+        final int clients;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final LongAdder games = new LongAdder();
+        final LongAdder mismatches = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        volatile String firstError;
+        long start;
+        
+        Schedule(double rate, double warmup, double duration, int clients) {
+            if (rate <= 0 || duration <= 0 || warmup < 0 || clients < 1)
+                throw new IllegalArgumentException("Bad run: " + rate + " moves/s for " + duration + " s after "
+                                                   + warmup + " s on " + clients + " clients");
+            warmupMoves = (long) (rate * warmup);
+            total = warmupMoves + (long) (rate * duration);
+            nanosPerMove = 1e9 / rate;
+            this.clients = clients;
+        }
+        
+        /**
+         * Runs the clients, each on its own thread, from a start a little ahead, and
+         * reports once all are done.
+         */
+        Report run(Client body) throws InterruptedException {
+            ExecutorService executor = GameServer.newThreadPerTaskExecutor();
+            // Leave the clients time to start before the first move is due.
+            start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100 + clients / 10);
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.execute(() -> body.play(client));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Keep waiting; a run ends when its last move has been made.
+            }
+            long measuredFrom = start + (long) (warmupMoves * nanosPerMove);
+            return new Report(total - warmupMoves, System.nanoTime() - measuredFrom, (total - warmupMoves) * nanosPerMove,
+                              this);
+        }
+        
+        /**
+         * Waits until move i is due, and returns when that is.
+         */
+        long await(long i) {
+            long due = start + (long) (i * nanosPerMove);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+            return due;
+        }
+        
+        /**
+         * Records move i, due at due and begun at began, unless it was made during the warmup.
+         */
+        void moveMade(long i, long due, long began) {
+            if (i < warmupMoves)
+                return;
+            long now = System.nanoTime();
+            latency.record(now - due);
+            service.record(now - began);
+        }
+        
+        /**
+         * Counts a game that has ended, and whether it ended as recorded.
+         */
+        void gameEnded(boolean asRecorded) {
+            games.increment();
+            if (!asRecorded)
+                mismatches.increment();
+        }
+        
+        /**
+         * Counts a client that stopped early because of the given error.
+         */
+        void failed(Exception e) {
+            errors.increment();
+            if (firstError == null)
+                firstError = e.toString();
+        }
+    }
+    
+    /**
+     * The moves one client makes, on its own thread.
+     */
+    private interface Client {
+        void play(int client);
+    }
+    
+    /**
+     * What a run measured.
+     */
+    public static final class Report {
+        private final long moves;
+        private final long elapsedNanos;
+        private final double scheduledNanos;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram service;
+        private final long games;
+        private final long mismatches;
+        private final long errors;
+        private final String firstError;
+        
+        Report(long moves, long elapsedNanos, double scheduledNanos, Schedule schedule) {
+            this.moves = moves;
+            this.elapsedNanos = elapsedNanos;
+            this.scheduledNanos = scheduledNanos;
+            latency = schedule.latency;
+            service = schedule.service;
+            games = schedule.games.sum();
+            mismatches = schedule.mismatches.sum();
+            errors = schedule.errors.sum();
+            firstError = schedule.firstError;
+        }
+        
+        /**
+         * Returns the number of moves scheduled after the warmup.
+         */
+        public long getMoves() {
+            return moves;
+        }
+        
+        /**
+         * Returns the moves measured per second, from the end of the warmup to the last move.
+         */
+        public double getThroughput() {
+            return latency.getCount() * 1e9 / elapsedNanos;
+        }
+        
+        /**
+         * Returns the latencies of the moves after the warmup, from when each was due.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+        
+        /**
+         * Returns the service times of the moves after the warmup, from when each was begun.
+         */
+        public LatencyHistogram getServiceTime() {
+            return service;
+        }
+        
+        /**
+         * Returns the number of games that did not end as the stream has them.
+         */
+        public long getMismatches() {
+            return mismatches;
+        }
+        
+        /**
+         * Returns the number of clients that stopped early on an error.
+         */
+        public long getErrors() {
+            return errors;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d of %d moves in %.2f s (%.2f s scheduled): %.0f moves/s; %d games, %d not as recorded%n",
+                                      latency.getCount(), moves, elapsedNanos / 1e9, scheduledNanos / 1e9,
+                                      getThroughput(), games, mismatches));
+            text.append(percentiles("Latency     ", latency));
+            text.append(percentiles("Service time", service));
+            if (errors > 0)
+                text.append(errors).append(" clients failed, the first with ").append(firstError).append('\n');
+            return text.toString();
+        }
+        
+        private static String percentiles(String name, LatencyHistogram histogram) {
+            return String.format("%s (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", name,
+                                 histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                                 histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                                 histogram.getMax() / 1e3);
+        }
+    }
+    
+    /**
+     * A growable list of ints, for building the flat arrays of a stream.
+     */
+    private static final class IntList {
+        int[] values = new int[1024];
+        int size;
+        
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+    
+    /**
+     * Runs the load generator from the command line.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seed = DEFAULT_SEED;
+        int gameCount = DEFAULT_GAMES;
+        String records = null;
+        double warmup = 0;
+        List<String> positional = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--seed":
+                    seed = Long.parseLong(args[++a]);
+                    break;
+                case "--games":
+                    gameCount = Integer.parseInt(args[++a]);
+                    break;
+                case "--records":
+                    records = args[++a];
+                    break;
+                case "--warmup":
+                    warmup = Double.parseDouble(args[++a]);
+                    break;
+                default:
+                    positional.add(args[a]);
+            }
+        }
+        if (positional.size() < 4) {
+            System.err.println("Usage: java LoadGenerator [--seed n] [--games n] [--records file] [--warmup seconds]"
+                               + " local|loopback|host:port movesPerSecond seconds clients [size [winLength]]");
+            return;
+        }
+        String target = positional.get(0);
+        double rate = Double.parseDouble(positional.get(1));
+        double duration = Double.parseDouble(positional.get(2));
+        int clients = Integer.parseInt(positional.get(3));
+        int size = positional.size() > 4 ? Integer.parseInt(positional.get(4)) : TicTacToeGame.DEFAULT_SIZE;
+        int winLength = positional.size() > 5 ? Integer.parseInt(positional.get(5)) : size;
+        LoadGenerator generator = records != null ? recorded(records) : synthetic(size, winLength, gameCount, seed);
+        System.out.printf("%s: %d games of %dx%d, %d in a row (checksum %016x), %.0f moves/s for %.1f s on %d clients%n",
+                          records != null ? records : "seed " + seed, generator.getGames(), generator.size,
+                          generator.size, generator.winLength, generator.getChecksum(), rate, duration, clients);
+        Report report;
+        if (target.equals("local")) {
+            report = generator.runLocal(rate, warmup, duration, clients);
+        } else if (target.equals("loopback")) {
+            try (GameServer server = new GameServer(0)) {
+                server.start();
+                report = generator.runServer("localhost", server.getPort(), rate, warmup, duration, clients);
+            }
+        } else {
+            int colon = target.lastIndexOf(':');
+            report = generator.runServer(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)),
+                                         rate, warmup, duration, clients);
+        }
+        System.out.print(report);
+    }
+}
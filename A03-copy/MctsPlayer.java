@@ -0,0 +1,401 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A player that chooses moves by Monte Carlo tree search, for boards too large
+ * to search exhaustively.
+ * 
+ * Several threads grow one shared tree without locks. A thread walks down the
+ * tree choosing the child with the best UCT score, plays a random game from the
+ * position it reaches, and adds the result to every node on its path. A node's
+ * visit count and score are packed into one long that is updated atomically, and
+ * a visit is counted as a loss as soon as a thread passes through (a virtual
+ * loss), which steers other threads to different branches until the result is
+ * in. Children are added to a node with a single compare-and-set.
+ * 
+ * Every thread plays on its own TicTacToeGame, making moves on the way down and
+ * during the random game and taking them back with undo afterwards, so a playout
+ * does not allocate. On boards larger than SMALL_BOARD, only cells within two of
+ * a mark are considered as moves in the tree.
+ * 
+ * Interrupting the thread that called chooseMove stops the search after the
+ * playouts under way, and chooseMove then returns -1.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class MctsPlayer implements Player {
+    // Boards up to this size consider every empty cell as a move in the tree.
+    public static final int SMALL_BOARD = 5;
+    
+    // Exploration constant of the UCT formula.
+    private static final double EXPLORATION = 1.4;
+    // A node gets children once it has been visited this many times.
+    private static final int EXPAND_VISITS = 2;
+    // Scores are kept in half points: 2 for a win, 1 for a tie, 0 for a loss.
+    private static final int WIN = 2;
+    private static final int TIE = 1;
+    
+    private final long millisPerMove;
+    private final long playoutsPerMove;
+    private final int threads;
+    private final SplittableRandom seeds;
+    private ExecutorService pool;
+    private Worker[] workers;
+    private long lastPlayouts;
+    private long lastNanos;
+    
+    /**
+     * Constructs a player that searches for millisPerMove milliseconds per move on all cores.
+     */
+    public MctsPlayer(long millisPerMove) {
+        this(millisPerMove, 0, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Constructs a player that searches until millisPerMove milliseconds have passed or
+     * playoutsPerMove playouts have been played, on the given number of threads. A limit
+     * of 0 is no limit, but one of the two must be set.
+     */
+    public MctsPlayer(long millisPerMove, long playoutsPerMove, int threads) {
+        this(millisPerMove, playoutsPerMove, threads, new SplittableRandom().nextLong());
+    }
+    
+    /**
+     * Constructs a player like the one above whose random games come from the given seed.
+     * With a single thread and no time limit, the same seed chooses the same moves.
+     */
+    public MctsPlayer(long millisPerMove, long playoutsPerMove, int threads, long seed) {
+        if (millisPerMove <= 0 && playoutsPerMove <= 0)
+            throw new IllegalArgumentException("Either a time or a playout limit is needed");
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        this.millisPerMove = millisPerMove;
+        this.playoutsPerMove = playoutsPerMove;
+        this.threads = threads;
+        seeds = new SplittableRandom(seed);
+    }
+    
+    @Override
+    public int chooseMove(TicTacToeGame game) {
+        if (game.isGameOver())
+            return -1;
+        long began = System.nanoTime();
+        if (workers == null || workers[0].game.getSize() != game.getSize()
+                || workers[0].game.getWinLength() != game.getWinLength()) {
+            workers = new Worker[threads];
+            for (int i = 0; i < threads; i++)
+                workers[i] = new Worker(game.getSize(), game.getWinLength(), seeds.split());
+        }
+        for (Worker worker : workers)
+            worker.setUp(game);
+        
+        Node root = new Node(-1, false);
+        long start = System.nanoTime();
+        long deadline = millisPerMove > 0 ? start + millisPerMove * 1000000 : Long.MAX_VALUE;
+        long limit = playoutsPerMove > 0 ? playoutsPerMove : Long.MAX_VALUE;
+        AtomicLong playouts = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        if (threads == 1) {
+            workers[0].search(root, deadline, limit, playouts, stop);
+        } else {
+            if (pool == null)
+                pool = Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "MctsPlayer-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            Future<?>[] searches = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                Worker worker = workers[i];
+                searches[i] = pool.submit((Callable<Void>) () -> {
+                    worker.search(root, deadline, limit, playouts, stop);
+                    return null;
+                });
+            }
+            boolean interrupted = false;
+            for (Future<?> search : searches) {
+                // The workers use the tree and their games until they return, so wait for them
+                // even when interrupted, telling them to stop.
+                while (true) {
+                    try {
+                        search.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        stop.set(true);
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Search failed", e.getCause());
+                    }
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        lastNanos = System.nanoTime() - start;
+        lastPlayouts = playouts.get();
+        if (Thread.currentThread().isInterrupted())
+            return -1;
+        
+        // Play the most visited move, which is the most reliable.
+        Node[] children = root.children;
+        Node best = null;
+        for (Node child : children) {
+            if (best == null || visits(child.stats) > visits(best.stats))
+                best = child;
+        }
+        Metrics.aiThought("mcts", began, game.getSize());
+        return best.move;
+    }
+    
+    /**
+     * Returns the number of playouts of the last move chosen.
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+    
+    /**
+     * Returns the playouts per second of the last move chosen, over all threads.
+     */
+    public double getPlayoutsPerSecond() {
+        return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+    }
+    
+    /**
+     * Returns the visit count packed in a node's stats.
+     */
+    private static int visits(long stats) {
+        return (int) (stats >>> 32);
+    }
+    
+    /**
+     * Returns the score, in half points, packed in a node's stats.
+     */
+    private static int score(long stats) {
+        return (int) stats;
+    }
+    
+    /**
+     * A position in the search tree, reached by playing move from its parent.
+     */
+    private static final class Node {
+        private static final AtomicLongFieldUpdater<Node> STATS =
+            AtomicLongFieldUpdater.newUpdater(Node.class, "stats");
+        private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+        
+        final int move;
+        // Whether X made the move; results are scored for the player who made it.
+        final boolean xMoved;
+        // Visits in the high 32 bits and score in the low 32 bits.
+        volatile long stats;
+        volatile Node[] children;
+        
+        Node(int move, boolean xMoved) {
+            this.move = move;
+            this.xMoved = xMoved;
+        }
+    }
+    
+    /**
+     * One search thread, with its own copy of the game and scratch arrays.
+     */
+    private static final class Worker {
+        final TicTacToeGame game;
+        final SplittableRandom random;
+        final Node[] path;
+        // Empty cells for the random game, and cells near a mark, marked with the current stamp.
+        final int[] empty;
+        final int[] nearStamp;
+        final int[] candidates;
+        int stamp;
+        
+        Worker(int size, int winLength, SplittableRandom random) {
+            game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+            this.random = random;
+            path = new Node[size * size + 1];
+            empty = new int[size * size];
+            nearStamp = new int[size * size];
+            candidates = new int[size * size];
+        }
+        
+        /**
+         * Copies the position of the given game, by replaying its moves.
+         */
+        void setUp(TicTacToeGame position) {
+            int moves = position.getMoveCount();
+            String toMove = position.getCurrentPlayer();
+            String other = toMove.equals(TicTacToeGame.PLAYER_X) ? TicTacToeGame.PLAYER_O : TicTacToeGame.PLAYER_X;
+            // Players alternate, so the first move was made by whoever makes the next one after an even count.
+            game.initializeGame((moves & 1) == 0 ? toMove : other);
+            int size = game.getSize();
+            for (int i = 0; i < moves; i++) {
+                int cell = position.getMove(i);
+                game.makeMove(cell / size, cell % size);
+                game.switchPlayer();
+            }
+        }
+        
+        /**
+         * Plays playouts from the root until the deadline passes, the threads have played
+         * limit playouts between them, or the search is stopped or interrupted.
+         */
+        void search(Node root, long deadline, long limit, AtomicLong playouts, AtomicBoolean stop) {
+            do {
+                playout(root);
+            } while (playouts.incrementAndGet() < limit && System.nanoTime() < deadline && !stop.get()
+                     && !Thread.currentThread().isInterrupted());
+        }
+        
+        /**
+         * Walks down the tree from the root, expanding the node it stops at, plays a random
+         * game from there and adds the result to every node on the path.
+         */
+        void playout(Node root) {
+            int size = game.getSize();
+            int depth = 0;
+            Node node = root;
+            path[depth++] = root;
+            Node.STATS.getAndAdd(root, 1L << 32);
+            while (!game.isGameOver()) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node != root && visits(node.stats) < EXPAND_VISITS)
+                        break;
+                    children = expand(node);
+                }
+                node = select(node, children);
+                // Count the visit now, as a loss until the result is known.
+                Node.STATS.getAndAdd(node, 1L << 32);
+                game.makeMove(node.move / size, node.move % size);
+                if (!game.isGameOver())
+                    game.switchPlayer();
+                path[depth++] = node;
+            }
+            
+            int randomMoves = 0;
+            if (!game.isGameOver())
+                randomMoves = randomGame();
+            String winner = game.getWinner();
+            boolean xWon = winner.equals(TicTacToeGame.PLAYER_X);
+            boolean tie = winner.equals(TicTacToeGame.TIE);
+            for (int i = 0; i < randomMoves + depth - 1; i++)
+                game.undo();
+            for (int i = 1; i < depth; i++) {
+                Node n = path[i];
+                int points = tie ? TIE : n.xMoved == xWon ? WIN : 0;
+                if (points != 0)
+                    Node.STATS.getAndAdd(n, points);
+                path[i] = null;
+            }
+        }
+        
+        /**
+         * Returns the child with the highest UCT score; unvisited children come first.
+         */
+        Node select(Node parent, Node[] children) {
+            double logVisits = Math.log(Math.max(1, visits(parent.stats)));
+            Node best = children[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                long stats = child.stats;
+                int visits = visits(stats);
+                if (visits == 0)
+                    return child;
+                double value = score(stats) / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * Gives the node one child per candidate move of the current position, unless another
+         * thread did so first, and returns the node's children.
+         */
+        Node[] expand(Node node) {
+            int count = candidateMoves();
+            boolean xToMove = game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X);
+            Node[] children = new Node[count];
+            for (int i = 0; i < count; i++)
+                children[i] = new Node(candidates[i], xToMove);
+            if (Node.CHILDREN.compareAndSet(node, null, children))
+                return children;
+            return node.children;
+        }
+        
+        /**
+         * Fills candidates with the moves considered in the tree and returns how many there are:
+         * every empty cell on small boards, otherwise the empty cells within two of a mark.
+         */
+        int candidateMoves() {
+            int size = game.getSize();
+            int count = 0;
+            if (size > SMALL_BOARD) {
+                if (game.getMoveCount() == 0) {
+                    // On an empty large board, only the centre is worth considering.
+                    candidates[0] = (size / 2) * size + size / 2;
+                    return 1;
+                }
+                stamp++;
+                for (int i = 0; i < game.getMoveCount(); i++) {
+                    int move = game.getMove(i);
+                    int row = move / size;
+                    int col = move % size;
+                    for (int r = Math.max(0, row - 2); r <= Math.min(size - 1, row + 2); r++) {
+                        for (int c = Math.max(0, col - 2); c <= Math.min(size - 1, col + 2); c++) {
+                            int cell = r * size + c;
+                            if (nearStamp[cell] != stamp && game.isEmpty(r, c)) {
+                                nearStamp[cell] = stamp;
+                                candidates[count++] = cell;
+                            }
+                        }
+                    }
+                }
+                if (count > 0)
+                    return count;
+            }
+            for (int cell = 0; cell < size * size; cell++) {
+                if (game.isEmpty(cell / size, cell % size))
+                    candidates[count++] = cell;
+            }
+            return count;
+        }
+        
+        /**
+         * Plays random moves until the game is over and returns how many were played.
+         */
+        int randomGame() {
+            int size = game.getSize();
+            int count = 0;
+            for (int cell = 0; cell < size * size; cell++) {
+                if (game.isEmpty(cell / size, cell % size))
+                    empty[count++] = cell;
+            }
+            int played = 0;
+            while (!game.isGameOver()) {
+                // Take a random cell out of the unplayed ones.
+                int i = random.nextInt(count);
+                int cell = empty[i];
+                empty[i] = empty[--count];
+                game.makeMove(cell / size, cell % size);
+                played++;
+                if (!game.isGameOver())
+                    game.switchPlayer();
+            }
+            return played;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * This class collects operational metrics for the game, the computer players,
+ * the GUI and the server: counts of moves and completed games, and latency
+ * histograms for handling a move, choosing a computer move and handling a GUI
+ * event on the event dispatch thread, along with the hit ratios of evaluation
+ * caches.
+ * 
+ * Metrics are only collected when the JVM is started with
+ * -Dtictactoe.metrics=true. The switch is a constant, so when it is off the JIT
+ * compiler removes the instrumentation from the hot paths altogether. When it is
+ * on, they are published over JMX as tictactoe:type=Metrics, and if
+ * -Dtictactoe.metrics.port is set, as plain text at http://host:port/metrics.
+ * 
+ * Independently of that switch, the same points emit Java Flight Recorder
+ * events (tictactoe.MoveHandled, tictactoe.AiThink and tictactoe.EdtHandler),
+ * which cost next to nothing unless a recording has them enabled.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("tictactoe.metrics");
+    public static final String PORT_PROPERTY = "tictactoe.metrics.port";
+    
+    private static final LongAdder MOVES = new LongAdder();
+    private static final LongAdder GAMES_COMPLETED = new LongAdder();
+    private static final LongAdder RESULTS_RECORDED = new LongAdder();
+    private static final LatencyHistogram MOVE_HANDLING = new LatencyHistogram();
+    private static final LatencyHistogram AI_THINK = new LatencyHistogram();
+    private static final LatencyHistogram EDT_HANDLER = new LatencyHistogram();
+    private static final Map<String, EvaluationCache> CACHES = new ConcurrentHashMap<>();
+    
+    private static boolean exported;
+    private static HttpServer endpoint;
+    
+    private Metrics() {
+    }
+    
+    /**
+     * Counts a move played in a real game, by a player in the GUI or on the server, and
+     * not one made by a search, a replay or a redo. Callers check ENABLED first.
+     */
+    static void moveMade() {
+        MOVES.increment();
+    }
+    
+    /**
+     * Counts a real game that ended with a win or a tie, in the GUI or on the server, and
+     * not one replayed, simulated or played in a tournament. Callers check ENABLED first.
+     */
+    static void gameCompleted() {
+        GAMES_COMPLETED.increment();
+    }
+    
+    /**
+     * Counts a result recorded on a scoreboard. Callers check ENABLED first.
+     */
+    static void resultRecorded() {
+        RESULTS_RECORDED.increment();
+    }
+    
+    /**
+     * Records the handling of a move that began at startNanos, a value of System.nanoTime():
+     * checking it, playing it and telling the players or updating the board.
+     */
+    static void moveHandled(long startNanos, int size) {
+        long nanos = System.nanoTime() - startNanos;
+        if (ENABLED)
+            MOVE_HANDLING.record(nanos);
+        MoveHandledEvent event = new MoveHandledEvent();
+        if (event.shouldCommit()) {
+            event.elapsed = nanos;
+            event.boardSize = size;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Records a computer player choosing a move, beginning at startNanos.
+     */
+    static void aiThought(String engine, long startNanos, int size) {
+        long nanos = System.nanoTime() - startNanos;
+        if (ENABLED)
+            AI_THINK.record(nanos);
+        AiThinkEvent event = new AiThinkEvent();
+        if (event.shouldCommit()) {
+            event.elapsed = nanos;
+            event.engine = engine;
+            event.boardSize = size;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Records a GUI event handled on the event dispatch thread, beginning at startNanos.
+     */
+    static void edtHandled(String handler, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        if (ENABLED)
+            EDT_HANDLER.record(nanos);
+        EdtHandlerEvent event = new EdtHandlerEvent();
+        if (event.shouldCommit()) {
+            event.elapsed = nanos;
+            event.handler = handler;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Reports the hit ratio of the cache under the given name, replacing any cache
+     * registered under it before.
+     */
+    public static void registerCache(String name, EvaluationCache cache) {
+        CACHES.put(name, cache);
+    }
+    
+    /**
+     * Returns the number of moves made in any game.
+     */
+    public static long getMoves() {
+        return MOVES.sum();
+    }
+    
+    /**
+     * Returns the number of games that ended with a win or a tie.
+     */
+    public static long getGamesCompleted() {
+        return GAMES_COMPLETED.sum();
+    }
+    
+    /**
+     * Returns the number of results recorded on scoreboards.
+     */
+    public static long getResultsRecorded() {
+        return RESULTS_RECORDED.sum();
+    }
+    
+    /**
+     * Returns the histogram of times to handle a move.
+     */
+    public static LatencyHistogram getMoveHandling() {
+        return MOVE_HANDLING;
+    }
+    
+    /**
+     * Returns the histogram of times computer players took to choose a move.
+     */
+    public static LatencyHistogram getAiThink() {
+        return AI_THINK;
+    }
+    
+    /**
+     * Returns the histogram of times spent handling GUI events.
+     */
+    public static LatencyHistogram getEdtHandler() {
+        return EDT_HANDLER;
+    }
+    
+    /**
+     * Returns the hit ratio of each registered cache, by name.
+     */
+    public static Map<String, Double> getCacheHitRatios() {
+        Map<String, Double> ratios = new TreeMap<>();
+        CACHES.forEach((name, cache) -> ratios.put(name, cache.getHitRate()));
+        return ratios;
+    }
+    
+    /**
+     * Returns every metric in the Prometheus text exposition format.
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        counter(text, "tictactoe_moves_total", "Moves played in real games.", getMoves());
+        counter(text, "tictactoe_games_completed_total", "Real games ended with a win or a tie.", getGamesCompleted());
+        counter(text, "tictactoe_results_recorded_total", "Results recorded on scoreboards.", getResultsRecorded());
+        summary(text, "tictactoe_move_handling_seconds", "Time to handle a move.", MOVE_HANDLING);
+        summary(text, "tictactoe_ai_think_seconds", "Time a computer player took to choose a move.", AI_THINK);
+        summary(text, "tictactoe_edt_handler_seconds", "Time spent handling a GUI event.", EDT_HANDLER);
+        text.append("# HELP tictactoe_cache_hit_ratio Fraction of evaluation cache lookups that hit.\n");
+        text.append("# TYPE tictactoe_cache_hit_ratio gauge\n");
+        getCacheHitRatios().forEach((name, ratio) ->
+            text.append("tictactoe_cache_hit_ratio{cache=\"").append(name).append("\"} ").append(ratio).append('\n'));
+        return text.toString();
+    }
+    
+    /**
+     * If metrics are enabled, registers them with the platform MBean server and, if the
+     * port property is set, starts serving them over HTTP. Only the first call has any
+     * effect. Failures are reported on standard error and otherwise ignored, so that a
+     * port in use does not stop the game.
+     */
+    public static synchronized void export() {
+        if (!ENABLED || exported)
+            return;
+        exported = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("tictactoe:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Could not register metrics with JMX: " + e);
+        }
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port != null) {
+            try {
+                startEndpoint(Integer.parseInt(port));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Could not serve metrics on port " + port + ": " + e);
+            }
+        }
+    }
+    
+    /**
+     * Serves the metrics as plain text at /metrics on the given port (0 picks a free one)
+     * and returns the port, on a daemon thread.
+     */
+    public static synchronized int startEndpoint(int port) throws IOException {
+        if (endpoint != null)
+            return endpoint.getAddress().getPort();
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Threads are daemons if the thread that creates them is, so starting the server from a
+        // daemon thread keeps its dispatcher thread from holding the JVM open.
+        Thread starter = new Thread(server::start, "Metrics-endpoint");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        endpoint = server;
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Stops serving the metrics over HTTP.
+     */
+    public static synchronized void stopEndpoint() {
+        if (endpoint != null) {
+            endpoint.stop(0);
+            endpoint = null;
+        }
+    }
+    
+    /**
+     * Appends a counter in the text format.
+     */
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+    
+    /**
+     * Appends a histogram as a summary with quantiles, in seconds, in the text format.
+     */
+    private static void summary(StringBuilder text, String name, String help, LatencyHistogram histogram) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" summary\n");
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                .append(histogram.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+        }
+        text.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+        text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+    
+    /**
+     * The JMX view of the metrics.
+     */
+    private static class Bean implements MetricsMXBean {
+        private long lastMoves;
+        private long lastNanos = System.nanoTime();
+        private double movesPerSecond;
+        
+        @Override
+        public long getMoves() {
+            return Metrics.getMoves();
+        }
+        
+        @Override
+        public synchronized double getMovesPerSecond() {
+            long now = System.nanoTime();
+            if (now - lastNanos >= 1000000000L) {
+                long moves = Metrics.getMoves();
+                movesPerSecond = (moves - lastMoves) * 1e9 / (now - lastNanos);
+                lastMoves = moves;
+                lastNanos = now;
+            }
+            return movesPerSecond;
+        }
+        
+        @Override
+        public long getGamesCompleted() {
+            return Metrics.getGamesCompleted();
+        }
+        
+        @Override
+        public long getResultsRecorded() {
+            return Metrics.getResultsRecorded();
+        }
+        
+        @Override
+        public long getMoveHandlingCount() {
+            return MOVE_HANDLING.getCount();
+        }
+        
+        @Override
+        public double getMoveHandlingMedianMicros() {
+            return MOVE_HANDLING.getValueAtPercentile(50) / 1e3;
+        }
+        
+        @Override
+        public double getMoveHandlingP99Micros() {
+            return MOVE_HANDLING.getValueAtPercentile(99) / 1e3;
+        }
+        
+        @Override
+        public long getAiThinkCount() {
+            return AI_THINK.getCount();
+        }
+        
+        @Override
+        public double getAiThinkMedianMicros() {
+            return AI_THINK.getValueAtPercentile(50) / 1e3;
+        }
+        
+        @Override
+        public double getAiThinkP99Micros() {
+            return AI_THINK.getValueAtPercentile(99) / 1e3;
+        }
+        
+        @Override
+        public long getEdtHandlerCount() {
+            return EDT_HANDLER.getCount();
+        }
+        
+        @Override
+        public double getEdtHandlerP99Micros() {
+            return EDT_HANDLER.getValueAtPercentile(99) / 1e3;
+        }
+        
+        @Override
+        public double getEdtHandlerMaxMicros() {
+            return EDT_HANDLER.getMax() / 1e3;
+        }
+        
+        @Override
+        public Map<String, Double> getCacheHitRatios() {
+            return Metrics.getCacheHitRatios();
+        }
+        
+        @Override
+        public String getText() {
+            return toText();
+        }
+        
+        @Override
+        public void resetHistograms() {
+            MOVE_HANDLING.reset();
+            AI_THINK.reset();
+            EDT_HANDLER.reset();
+        }
+    }
+    
+    @Name("tictactoe.MoveHandled")
+    @Label("Move Handled")
+    @Category("Tic Tac Toe")
+    @Description("A move checked, played and shown by the GUI or sent to both players by a server session")
+    static class MoveHandledEvent extends Event {
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+        
+        @Label("Board Size")
+        int boardSize;
+    }
+    
+    @Name("tictactoe.AiThink")
+    @Label("Computer Move")
+    @Category("Tic Tac Toe")
+    @Description("A computer player choosing a move")
+    static class AiThinkEvent extends Event {
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+        
+        @Label("Engine")
+        String engine;
+        
+        @Label("Board Size")
+        int boardSize;
+    }
+    
+    @Name("tictactoe.EdtHandler")
+    @Label("GUI Event Handled")
+    @Category("Tic Tac Toe")
+    @Description("A GUI event handled on the event dispatch thread")
+    static class EdtHandlerEvent extends Event {
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+        
+        @Label("Handler")
+        String handler;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Map;
+
+/**
+ * The management interface through which Metrics are published over JMX, as
+ * tictactoe:type=Metrics. Durations are in microseconds.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public interface MetricsMXBean {
+    /** Moves played in real games, in a GUI or on a server; searches, replays and redos are not counted. */
+    long getMoves();
+    
+    /** Moves per second since this attribute was last read, at most once a second. */
+    double getMovesPerSecond();
+    
+    /** Real games that ended with a win or a tie, in a GUI or on a server. */
+    long getGamesCompleted();
+    
+    /** Results recorded on scoreboards. */
+    long getResultsRecorded();
+    
+    /** Number of moves handled by a GUI or a server session. */
+    long getMoveHandlingCount();
+    
+    /** Median time to handle a move, in microseconds. */
+    double getMoveHandlingMedianMicros();
+    
+    /** 99th percentile of the time to handle a move, in microseconds. */
+    double getMoveHandlingP99Micros();
+    
+    /** Number of moves chosen by the computer players. */
+    long getAiThinkCount();
+    
+    /** Median time a computer player took to choose a move, in microseconds. */
+    double getAiThinkMedianMicros();
+    
+    /** 99th percentile of the time a computer player took to choose a move, in microseconds. */
+    double getAiThinkP99Micros();
+    
+    /** Number of GUI events handled on the event dispatch thread. */
+    long getEdtHandlerCount();
+    
+    /** 99th percentile of the time spent handling a GUI event, in microseconds. */
+    double getEdtHandlerP99Micros();
+    
+    /** Longest time spent handling a GUI event, in microseconds. */
+    double getEdtHandlerMaxMicros();
+    
+    /** Hit ratio of each registered evaluation cache, by name. */
+    Map<String, Double> getCacheHitRatios();
+    
+    /** All metrics in the plain-text format also served over HTTP. */
+    String getText();
+    
+    /** Resets the latency histograms. */
+    void resetHistograms();
+}
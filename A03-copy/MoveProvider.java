@@ -0,0 +1,33 @@
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A source of moves for one side of a TicTacToeGame that does not make its caller
+ * wait: a move is asked for and arrives later, so that a GUI can keep painting
+ * while a computer player thinks.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public interface MoveProvider {
+    
+    /**
+     * Starts choosing a move for the current player of the given game, which is not over,
+     * and returns the move to come, encoded as row * size + col. The position is copied
+     * before this returns, so the game may change meanwhile. Asking again, or cancelling
+     * the returned future, stops the search.
+     */
+    CompletableFuture<Integer> requestMove(TicTacToeGame game);
+    
+    /**
+     * Starts thinking about the given game while the opponent is to move, until the next
+     * request, cancel, or millis milliseconds. By default nothing is done.
+     */
+    default void ponder(TicTacToeGame game, long millis) {
+    }
+    
+    /**
+     * Stops any search or pondering under way; a pending move is cancelled.
+     */
+    void cancel();
+}
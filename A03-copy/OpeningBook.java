@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class stores precomputed best moves and game values in a compact binary
+ * file that is memory-mapped at runtime, so looking up a move costs a single
+ * indexed read and no search.
+ * 
+ * Boards with at most nine cells use a direct layout: one byte for every board
+ * encoded in base 3 (one digit per cell) and side to move, which makes the 3x3
+ * book a complete tablebase of about 39 KB. Larger boards use a hashed layout:
+ * an open-addressing table of 16-byte slots keyed by the game's canonical
+ * position key, holding the positions within a given number of plies of the
+ * start. The key is kept up to date by the game, so a lookup does not read the
+ * board; positions equivalent by symmetry share a slot, whose move is stored as
+ * seen in the canonical orientation. Positions that are not in the book, or that
+ * are already over, have no entry.
+ * 
+ * The book is written by generate, or from the command line with
+ * java OpeningBook file [size winLength plies millisPerPosition].
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class OpeningBook {
+    public static final int UNKNOWN = -2;
+    
+    private static final int MAGIC = 0x54545442; // "TTTB"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int LAYOUT_DIRECT = 0;
+    private static final int LAYOUT_HASHED = 1;
+    private static final int DIRECT_MAX_CELLS = 9;
+    private static final int SLOT_BYTES = 16;
+    
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int winLength;
+    private final int layout;
+    private final int slots;
+    private final PositionKeys keys;
+    
+    /**
+     * Creates a book over an already mapped file whose header has been checked.
+     */
+    private OpeningBook(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        size = buffer.get(6);
+        winLength = buffer.get(7);
+        layout = buffer.get(8);
+        slots = buffer.getInt(12);
+        keys = PositionKeys.of(size, winLength);
+    }
+    
+    /**
+     * Memory-maps the book in the given file.
+     * @throws IllegalArgumentException if the file is not an opening book.
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION)
+                throw new IllegalArgumentException("Not an opening book: " + file);
+            return new OpeningBook(buffer);
+        }
+    }
+    
+    /**
+     * Returns the number of rows (and columns) of the boards in this book.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of marks in a row needed to win in this book.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+    
+    /**
+     * Returns the best move for the current player of the given game, encoded as
+     * row * size + col, or -1 if the position is not in the book.
+     */
+    public int lookupMove(TicTacToeGame game) {
+        return (entry(game) & 0xFFFF) - 1;
+    }
+    
+    /**
+     * Returns the value of the given position for the current player: 1 for a win,
+     * 0 for a draw, -1 for a loss, or UNKNOWN if the position is not in the book.
+     */
+    public int lookupValue(TicTacToeGame game) {
+        int code = entry(game) >>> 16;
+        return code == 0 ? UNKNOWN : code - 2;
+    }
+    
+    /**
+     * Reads the entry for the given game: the move plus one in the low 16 bits and the
+     * value code (value plus two, or 0 if unknown) above them. Returns 0 if there is none.
+     */
+    private int entry(TicTacToeGame game) {
+        if (game.getSize() != size || game.getWinLength() != winLength)
+            throw new IllegalArgumentException("Book is for " + size + "x" + size + ", " + winLength + " in a row");
+        if (layout == LAYOUT_DIRECT) {
+            int b = buffer.get(HEADER_BYTES + directIndex(game)) & 0xFF;
+            return ((b >>> 5) << 16) | (b & 0x1F);
+        }
+        long key = hashKey(game);
+        int slot = (int) key & (slots - 1);
+        while (true) {
+            int offset = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = buffer.getLong(offset);
+            if (stored == 0)
+                return 0;
+            if (stored == key) {
+                int move = buffer.getInt(offset + 8) & 0xFFFF;
+                if (move != 0)
+                    move = keys.unmap(game.getCanonicalSymmetry(), move - 1) + 1;
+                return ((buffer.getInt(offset + 12) & 0xFFFF) << 16) | move;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+    
+    /**
+     * Returns the index of the given position in the direct layout: the cells read as a
+     * base 3 number (0 empty, 1 X, 2 O), doubled, plus one if O is to move.
+     */
+    private static int directIndex(TicTacToeGame game) {
+        int n = game.getSize();
+        int index = 0;
+        for (int i = n * n - 1; i >= 0; i--) {
+            String cell = game.getCell(i / n, i % n);
+            index = index * 3 + (cell.equals(TicTacToeGame.PLAYER_X) ? 1 : cell.equals(TicTacToeGame.PLAYER_O) ? 2 : 0);
+        }
+        return index * 2 + (game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_O) ? 1 : 0);
+    }
+    
+    /**
+     * Returns the key of the given position for the hashed layout: its canonical
+     * position key, or 1 in place of 0, which marks an empty slot.
+     */
+    private static long hashKey(TicTacToeGame game) {
+        long key = game.getPositionKey();
+        return key == 0 ? 1 : key;
+    }
+    
+    /**
+     * Returns the move as it is stored in the hashed layout for the given game: the
+     * cell seen in the canonical orientation, plus one, or 0 for no move.
+     */
+    private static int storedMove(TicTacToeGame game, PositionKeys keys, int move) {
+        return move < 0 ? 0 : keys.map(game.getCanonicalSymmetry(), move) + 1;
+    }
+    
+    /**
+     * Enumerates every position reachable within the given number of plies of
+     * initializeGame, with either player starting, solves each one and writes the
+     * book to the given file. Boards with at most nine cells are always enumerated
+     * completely and solved exactly, without a time limit; on larger boards each
+     * position gets millisPerPosition of search.
+     * @return the number of positions written
+     * @throws IllegalArgumentException if a larger board is given fewer than one ply.
+     */
+    public static int generate(Path file, int size, int winLength, int plies, long millisPerPosition)
+        throws IOException {
+        int cells = size * size;
+        boolean direct = cells <= DIRECT_MAX_CELLS;
+        if (direct) {
+            plies = cells;
+            // The search is then unbounded, so that no value is left unknown on a slow machine.
+            millisPerPosition = 0;
+        } else if (plies < 1) {
+            throw new IllegalArgumentException("An opening book needs at least one ply, not " + plies);
+        }
+        Solver solver = new Solver(size, winLength);
+        PositionKeys keys = PositionKeys.of(size, winLength);
+        
+        // Depth-first enumeration; game holds the moves path[0] to path[depth - 1], and
+        // each move tried at the current depth is taken back with undo.
+        Set<Long> seen = new HashSet<>();
+        ByteBuffer directTable = direct ? ByteBuffer.allocate(2 * pow3(cells)) : null;
+        ByteBuffer hashedEntries = direct ? null : ByteBuffer.allocate(1 << 20);
+        int count = 0;
+        int[] path = new int[plies];
+        String[] starters = {TicTacToeGame.PLAYER_X, TicTacToeGame.PLAYER_O};
+        for (String starter : starters) {
+            TicTacToeGame game = new TicTacToeGame(size, winLength, starter);
+            int depth = 0;
+            path[0] = -1;
+            while (depth >= 0) {
+                // Advance to the next untried move at this depth.
+                path[depth]++;
+                if (path[depth] >= cells) {
+                    if (--depth >= 0)
+                        game.undo();
+                    continue;
+                }
+                int move = path[depth];
+                if (!game.isEmpty(move / size, move % size))
+                    continue;
+                game.makeMove(move / size, move % size);
+                if (game.isGameOver()) {
+                    game.undo();
+                    continue;
+                }
+                game.switchPlayer();
+                // The direct layout has an entry for every orientation of a position; the
+                // hashed one a single entry for all of them.
+                long key = direct ? directIndex(game) : hashKey(game);
+                if (!seen.add(key)) {
+                    game.undo();
+                    continue;
+                }
+                count++;
+                int best = solver.findBestMove(game, millisPerPosition);
+                int value = searchedValue(solver, game);
+                if (direct) {
+                    directTable.put(directIndex(game), (byte) (((value + 2) << 5) | (best + 1)));
+                } else {
+                    if (hashedEntries.remaining() < SLOT_BYTES)
+                        hashedEntries = grow(hashedEntries);
+                    hashedEntries.putLong(key).putInt(storedMove(game, keys, best))
+                                 .putInt(value == UNKNOWN ? 0 : value + 2);
+                }
+                if (depth + 1 < plies) {
+                    depth++;
+                    path[depth] = -1;
+                } else {
+                    game.undo();
+                }
+            }
+        }
+        // The empty boards are not reached by the enumeration above.
+        for (String starter : starters) {
+            TicTacToeGame game = new TicTacToeGame(size, winLength, starter);
+            int best = solver.findBestMove(game, millisPerPosition);
+            int value = searchedValue(solver, game);
+            if (direct) {
+                directTable.put(directIndex(game), (byte) (((value + 2) << 5) | (best + 1)));
+            } else {
+                if (hashedEntries.remaining() < SLOT_BYTES)
+                    hashedEntries = grow(hashedEntries);
+                hashedEntries.putLong(hashKey(game)).putInt(storedMove(game, keys, best))
+                             .putInt(value == UNKNOWN ? 0 : value + 2);
+            }
+            count++;
+        }
+        
+        ByteBuffer out;
+        if (direct) {
+            out = ByteBuffer.allocate(HEADER_BYTES + directTable.capacity());
+            writeHeader(out, size, winLength, LAYOUT_DIRECT, 0);
+            directTable.rewind();
+            out.put(directTable);
+        } else {
+            int slots = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+            out = ByteBuffer.allocate(HEADER_BYTES + slots * SLOT_BYTES);
+            writeHeader(out, size, winLength, LAYOUT_HASHED, slots);
+            hashedEntries.flip();
+            while (hashedEntries.hasRemaining()) {
+                long key = hashedEntries.getLong();
+                int move = hashedEntries.getInt();
+                int value = hashedEntries.getInt();
+                int slot = (int) key & (slots - 1);
+                while (out.getLong(HEADER_BYTES + slot * SLOT_BYTES) != 0)
+                    slot = (slot + 1) & (slots - 1);
+                int offset = HEADER_BYTES + slot * SLOT_BYTES;
+                out.putLong(offset, key).putInt(offset + 8, move).putInt(offset + 12, value);
+            }
+        }
+        out.rewind();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining())
+                channel.write(out);
+        }
+        return count;
+    }
+    
+    /**
+     * Returns the value of the last search by solver on game, or UNKNOWN if the search
+     * neither reached the end of the game nor found a forced result.
+     */
+    private static int searchedValue(Solver solver, TicTacToeGame game) {
+        int score = solver.getLastScore();
+        if (Math.abs(score) <= Solver.WIN_SCORE / 2 && solver.getLastDepth() < game.getNumFreeSquares())
+            return UNKNOWN;
+        return Integer.signum(score);
+    }
+    
+    /**
+     * Writes the 16-byte file header.
+     */
+    private static void writeHeader(ByteBuffer out, int size, int winLength, int layout, int slots) {
+        out.putInt(MAGIC).putShort((short) VERSION).put((byte) size).put((byte) winLength)
+           .put((byte) layout).put((byte) 0).put((byte) 0).put((byte) 0).putInt(slots);
+    }
+    
+    /**
+     * Returns a buffer twice the capacity of the given one holding its contents.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+    
+    /**
+     * Returns 3 to the power n.
+     */
+    private static int pow3(int n) {
+        int result = 1;
+        for (int i = 0; i < n; i++)
+            result *= 3;
+        return result;
+    }
+    
+    /**
+     * Generates a book from the command line:
+     * java OpeningBook file [size winLength plies millisPerPosition].
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java OpeningBook file [size winLength plies millisPerPosition]");
+            System.exit(1);
+        }
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : TicTacToeGame.DEFAULT_SIZE;
+        int winLength = args.length > 2 ? Integer.parseInt(args[2]) : size;
+        int plies = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        long millis = args.length > 4 ? Long.parseLong(args[4]) : 100;
+        long start = System.nanoTime();
+        int count = generate(Paths.get(args[0]), size, winLength, plies, millis);
+        System.out.printf("Wrote %d positions to %s in %.1f s%n", count, args[0], (System.nanoTime() - start) / 1e9);
+    }
+}
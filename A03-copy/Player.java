@@ -0,0 +1,28 @@
+/**
+ * A strategy that chooses moves for one side of a TicTacToeGame.
+ * Players are driven by the Simulator and other headless code without a GUI.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public interface Player {
+    
+    /**
+     * Chooses a move for the current player of the given game, which is not over.
+     * The game must not be changed.
+     * 
+     * @param game the game to move in
+     * @return the chosen empty cell, encoded as row * size + col
+     */
+    int chooseMove(TicTacToeGame game);
+    
+    /**
+     * Thinks about the given game, which is not over, while the opponent is to move,
+     * for at most millis milliseconds or until the calling thread is interrupted, so
+     * that a later chooseMove is quicker or better. The game must not be changed. By
+     * default a player does not ponder.
+     */
+    default void ponder(TicTacToeGame game, long millis) {
+    }
+}
@@ -0,0 +1,146 @@
+import java.lang.ref.SoftReference;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds the Zobrist keys and the symmetry tables used to hash the
+ * positions of one board size and win length.
+ * 
+ * A position is hashed once for each of the eight rotations and reflections of
+ * the board, by XOR-ing the key of every mark at its image under that symmetry.
+ * Placing or removing a mark updates each hash with one XOR, and the smallest of
+ * the eight, combined with the side to move, is the canonical key: positions
+ * that are equivalent by symmetry have the same canonical key.
+ * 
+ * The keys are fixed for a board size and win length, so canonical keys can be
+ * compared between games, solvers and runs. Instances are immutable and shared;
+ * those of a variant no game uses any more can be reclaimed when memory runs
+ * short, since a 100x100 variant holds about 2 MB of keys, and are built again
+ * the same if needed.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public final class PositionKeys {
+    public static final int SYMMETRIES = 8;
+    
+    private static final ConcurrentHashMap<Integer, SoftReference<PositionKeys>> SHARED = new ConcurrentHashMap<>();
+    
+    private final int size;
+    // symmetry[s][cell] is the image of cell under symmetry s; inverse[s] undoes it.
+    private final int[][] symmetry;
+    private final int[][] inverse;
+    // xKeys[s][cell] and oKeys[s][cell] are the keys of a mark on cell as seen under symmetry s.
+    private final long[][] xKeys;
+    private final long[][] oKeys;
+    private final long sideKey;
+    
+    /**
+     * Returns the keys for size x size boards where winLength marks in a row win.
+     */
+    public static PositionKeys of(int size, int winLength) {
+        int variant = size * (TicTacToeGame.MAX_SIZE + 1) + winLength;
+        SoftReference<PositionKeys> shared = SHARED.get(variant);
+        PositionKeys keys = shared == null ? null : shared.get();
+        if (keys == null) {
+            // Two threads may both build the keys; they are the same, and either is kept.
+            keys = new PositionKeys(size, winLength);
+            SHARED.values().removeIf(reference -> reference.get() == null);
+            SHARED.put(variant, new SoftReference<>(keys));
+        }
+        return keys;
+    }
+    
+    /**
+     * Builds the tables for one board size and win length.
+     */
+    private PositionKeys(int size, int winLength) {
+        this.size = size;
+        int cells = size * size;
+        symmetry = new int[SYMMETRIES][cells];
+        inverse = new int[SYMMETRIES][cells];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int m = size - 1;
+                int[] images = {
+                    r * size + c, c * size + (m - r), (m - r) * size + (m - c), (m - c) * size + r,
+                    r * size + (m - c), (m - r) * size + c, c * size + r, (m - c) * size + (m - r)
+                };
+                for (int s = 0; s < SYMMETRIES; s++) {
+                    symmetry[s][r * size + c] = images[s];
+                    inverse[s][images[s]] = r * size + c;
+                }
+            }
+        }
+        
+        // A fixed seed keeps hashes, and so table behaviour, reproducible between runs.
+        Random random = new Random(0x5EEDL + size * 131L + winLength);
+        long[] x = new long[cells];
+        long[] o = new long[cells];
+        for (int i = 0; i < cells; i++)
+            x[i] = random.nextLong();
+        for (int i = 0; i < cells; i++)
+            o[i] = random.nextLong();
+        sideKey = random.nextLong();
+        // Looking the keys up by symmetry and original cell saves an indirection per update.
+        xKeys = new long[SYMMETRIES][cells];
+        oKeys = new long[SYMMETRIES][cells];
+        for (int s = 0; s < SYMMETRIES; s++) {
+            for (int i = 0; i < cells; i++) {
+                xKeys[s][i] = x[symmetry[s][i]];
+                oKeys[s][i] = o[symmetry[s][i]];
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of rows (and columns) of the boards these keys are for.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Adds or removes a mark of X (if x is set) or O on the cell in all eight hashes.
+     */
+    public void toggle(long[] hashes, int cell, boolean x) {
+        long[][] keys = x ? xKeys : oKeys;
+        for (int s = 0; s < SYMMETRIES; s++)
+            hashes[s] ^= keys[s][cell];
+    }
+    
+    /**
+     * Returns the index of the symmetry with the smallest hash.
+     */
+    public static int canonicalSymmetry(long[] hashes) {
+        int best = 0;
+        for (int s = 1; s < SYMMETRIES; s++) {
+            if (hashes[s] < hashes[best])
+                best = s;
+        }
+        return best;
+    }
+    
+    /**
+     * Returns the canonical key of a position: its smallest hash, combined with the side to move.
+     */
+    public long canonicalKey(long[] hashes, boolean xToMove) {
+        long key = hashes[canonicalSymmetry(hashes)];
+        return xToMove ? key ^ sideKey : key;
+    }
+    
+    /**
+     * Returns the image of cell under symmetry s.
+     */
+    public int map(int s, int cell) {
+        return symmetry[s][cell];
+    }
+    
+    /**
+     * Returns the cell whose image under symmetry s is the given cell.
+     */
+    public int unmap(int s, int cell) {
+        return inverse[s][cell];
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.SplittableRandom;
+
+/**
+ * A player that picks a uniformly random empty cell.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class RandomPlayer implements Player {
+    private final SplittableRandom random;
+    
+    /**
+     * Constructs a random player with a random seed.
+     */
+    public RandomPlayer() {
+        random = new SplittableRandom();
+    }
+    
+    /**
+     * Constructs a random player whose moves are reproducible from the given seed.
+     */
+    public RandomPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+    
+    /**
+     * Picks the k-th empty cell for a random k.
+     */
+    @Override
+    public int chooseMove(TicTacToeGame game) {
+        int size = game.getSize();
+        int k = random.nextInt(game.getNumFreeSquares());
+        for (int cell = 0; cell < size * size; cell++) {
+            if (game.isEmpty(cell / size, cell % size) && k-- == 0)
+                return cell;
+        }
+        throw new IllegalStateException("No empty cell");
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a Scoreboard that also rates its players. Every recorded game
+ * moves both players' Elo ratings at once, so the ratings are always up to date
+ * while a tournament is still running, and every player scores 1 point for a
+ * win and 1/2 for a draw, and for a bye the points of winning every game of the
+ * match sat out. The ranked table orders the players by points, then by rating.
+ * 
+ * Games may be recorded from many threads at once. The rating update of one game
+ * reads and writes both players, so it is made under a single lock; it takes far
+ * less time than the game it rates.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class RatedScoreboard extends Scoreboard {
+    public static final double INITIAL_RATING = 1500;
+    public static final double DEFAULT_K_FACTOR = 24;
+    
+    private final double kFactor;
+    private final ConcurrentHashMap<String, Rating> ratings = new ConcurrentHashMap<>();
+    private final Object ratingLock = new Object();
+    
+    /**
+     * Constructs an empty scoreboard that moves ratings by at most DEFAULT_K_FACTOR per game.
+     */
+    public RatedScoreboard() {
+        this(DEFAULT_K_FACTOR);
+    }
+    
+    /**
+     * Constructs an empty scoreboard that moves ratings by at most kFactor per game.
+     */
+    public RatedScoreboard(double kFactor) {
+        this.kFactor = kFactor;
+    }
+    
+    /**
+     * Adds a player with the initial rating, so that they are ranked before their first game.
+     */
+    public void addPlayer(String name) {
+        ratingFor(name);
+    }
+    
+    /**
+     * Records the result of a game between two named players and updates their ratings.
+     * @param winner "X", "O", or "T" for tie
+     */
+    @Override
+    public void recordGame(String playerXName, String playerOName, String winner) {
+        super.recordGame(playerXName, playerOName, winner);
+        Rating x = ratingFor(playerXName);
+        Rating o = ratingFor(playerOName);
+        double scoreX = winner.equals(TicTacToeGame.PLAYER_X) ? 1 : winner.equals(TicTacToeGame.TIE) ? 0.5 : 0;
+        synchronized (ratingLock) {
+            double expectedX = 1 / (1 + Math.pow(10, (o.rating - x.rating) / 400));
+            double change = kFactor * (scoreX - expectedX);
+            x.rating += change;
+            o.rating -= change;
+            x.points += scoreX;
+            o.points += 1 - scoreX;
+            x.games++;
+            o.games++;
+        }
+    }
+    
+    /**
+     * Records a round that the named player sat out, worth the points of winning all
+     * gamesPerMatch games of a match but no rating.
+     */
+    public void recordBye(String name, int gamesPerMatch) {
+        Rating rating = ratingFor(name);
+        synchronized (ratingLock) {
+            rating.points += gamesPerMatch;
+            rating.byes++;
+        }
+    }
+    
+    /**
+     * Returns the named player's rating, or INITIAL_RATING if they have not played.
+     */
+    public double getRating(String name) {
+        Rating rating = ratings.get(name);
+        if (rating == null)
+            return INITIAL_RATING;
+        synchronized (ratingLock) {
+            return rating.rating;
+        }
+    }
+    
+    /**
+     * Returns the named player's points, or 0 if they have not played.
+     */
+    public double getPoints(String name) {
+        Rating rating = ratings.get(name);
+        if (rating == null)
+            return 0;
+        synchronized (ratingLock) {
+            return rating.points;
+        }
+    }
+    
+    /**
+     * Returns every player, ranked by points and then by rating, best first.
+     */
+    public List<Ranking> getRankings() {
+        List<Ranking> rankings = new ArrayList<>(ratings.size());
+        synchronized (ratingLock) {
+            for (Rating rating : ratings.values()) {
+                PlayerStats stats = getPlayerStats(rating.name);
+                rankings.add(new Ranking(rating.name, rating.rating, rating.points, rating.games, rating.byes,
+                                         stats == null ? 0 : stats.getWins(), stats == null ? 0 : stats.getDraws(),
+                                         stats == null ? 0 : stats.getLosses()));
+            }
+        }
+        Collections.sort(rankings);
+        return rankings;
+    }
+    
+    /**
+     * Returns the ranked table as text, one line per player under a header.
+     */
+    public String getTable() {
+        StringBuilder table = new StringBuilder(String.format("%4s  %-20s %7s %7s %6s %5s %5s %5s%n", "Rank",
+                                                              "Player", "Rating", "Points", "Games", "Won",
+                                                              "Drawn", "Lost"));
+        int rank = 1;
+        for (Ranking ranking : getRankings()) {
+            table.append(String.format("%4d  %-20s %7.0f %7.1f %6d %5d %5d %5d%n", rank++, ranking.getName(),
+                                       ranking.getRating(), ranking.getPoints(), ranking.getGames(),
+                                       ranking.getWins(), ranking.getDraws(), ranking.getLosses()));
+        }
+        return table.toString();
+    }
+    
+    /**
+     * Returns the named player's rating, creating it on first use.
+     */
+    private Rating ratingFor(String name) {
+        return ratings.computeIfAbsent(name, Rating::new);
+    }
+    
+    /**
+     * The rating and points of one player; guarded by ratingLock.
+     */
+    private static class Rating {
+        final String name;
+        double rating = INITIAL_RATING;
+        double points;
+        int games;
+        int byes;
+        
+        Rating(String name) {
+            this.name = name;
+        }
+    }
+    
+    /**
+     * An immutable row of the ranked table, ordered best first.
+     */
+    public static final class Ranking implements Comparable<Ranking> {
+        private final String name;
+        private final double rating;
+        private final double points;
+        private final int games;
+        private final int byes;
+        private final long wins;
+        private final long draws;
+        private final long losses;
+        
+        Ranking(String name, double rating, double points, int games, int byes, long wins, long draws, long losses) {
+            this.name = name;
+            this.rating = rating;
+            this.points = points;
+            this.games = games;
+            this.byes = byes;
+            this.wins = wins;
+            this.draws = draws;
+            this.losses = losses;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public double getRating() {
+            return rating;
+        }
+        
+        public double getPoints() {
+            return points;
+        }
+        
+        public int getGames() {
+            return games;
+        }
+        
+        public int getByes() {
+            return byes;
+        }
+        
+        public long getWins() {
+            return wins;
+        }
+        
+        public long getDraws() {
+            return draws;
+        }
+        
+        public long getLosses() {
+            return losses;
+        }
+        
+        @Override
+        public int compareTo(Ranking other) {
+            int byPoints = Double.compare(other.points, points);
+            if (byPoints != 0)
+                return byPoints;
+            int byRating = Double.compare(other.rating, rating);
+            return byRating != 0 ? byRating : name.compareTo(other.name);
+        }
+        
+        @Override
+        public String toString() {
+            return name + ": " + Math.round(rating) + " (" + points + " points)";
+        }
+    }
+}
@@ -1,26 +1,50 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * This class keeps track of wins, draws, and total games played.
  * 
+ * It is safe to record results from many threads at once. The counters are
+ * striped LongAdders, so concurrent writers do not contend on a single field,
+ * and reading a score takes a snapshot of the counters without blocking them.
+ * When player names are given, wins, losses, draws and win streaks are also kept
+ * per player, and a top-N leaderboard by wins is updated as wins come in, so
+ * reading it never sorts.
+ * 
  * @author Dumany Lombe
  * @version Student Number: 101316658
  * 
  */
 public class Scoreboard {
-    private int winsX;
-    private int winsO;
-    private int draws;
-    private int gamesPlayed;
+    public static final int DEFAULT_LEADERBOARD_SIZE = 10;
+    
+    private final LongAdder winsX = new LongAdder();
+    private final LongAdder winsO = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder gamesPlayed = new LongAdder();
+    
+    private final ConcurrentHashMap<String, PlayerStats> players = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Standing> leaderboard = new ConcurrentSkipListSet<>();
+    private final int leaderboardSize;
     
     /**
-     * Constructs a new Scoreboard, initializing the counts of X wins, O wins, draws, 
+     * Constructs a new Scoreboard, initializing the counts of X wins, O wins, draws,
      * and total games played to zero. This provides a clean starting point for tracking
      * future game results.
      */
     public Scoreboard() {
-        winsX = 0;
-        winsO = 0;
-        draws = 0;
-        gamesPlayed = 0;
+        this(DEFAULT_LEADERBOARD_SIZE);
+    }
+    
+    /**
+     * Constructs a new, empty Scoreboard whose leaderboard holds the given number of players.
+     */
+    public Scoreboard(int leaderboardSize) {
+        this.leaderboardSize = leaderboardSize;
     }
     
     /**
@@ -28,25 +52,285 @@ public class Scoreboard {
      */
     public void recordWin(String player) {
         if (player.equals(TicTacToeGame.PLAYER_X))
-            winsX++;
+            winsX.increment();
         else if (player.equals(TicTacToeGame.PLAYER_O))
-            winsO++;
-        gamesPlayed++;
+            winsO.increment();
+        gamesPlayed.increment();
+        if (Metrics.ENABLED)
+            Metrics.resultRecorded();
     }
     
     /**
      * Records a draw.
      */
     public void recordDraw() {
-        draws++;
-        gamesPlayed++;
+        draws.increment();
+        gamesPlayed.increment();
+        if (Metrics.ENABLED)
+            Metrics.resultRecorded();
+    }
+    
+    /**
+     * Records the result of a game between two named players, updating both the X and O
+     * totals and the per-player statistics.
+     * @param winner "X", "O", or "T" for tie
+     */
+    public void recordGame(String playerXName, String playerOName, String winner) {
+        PlayerStats x = statsFor(playerXName);
+        PlayerStats o = statsFor(playerOName);
+        if (winner.equals(TicTacToeGame.TIE)) {
+            recordDraw();
+            x.recordDraw();
+            o.recordDraw();
+        } else {
+            recordWin(winner);
+            PlayerStats won = winner.equals(TicTacToeGame.PLAYER_X) ? x : o;
+            PlayerStats lost = won == x ? o : x;
+            won.recordWin();
+            lost.recordLoss();
+            rank(won);
+        }
+    }
+    
+    /**
+     * Adds the results recorded by another scoreboard to this one.
+     */
+    public void merge(Scoreboard other) {
+        winsX.add(other.winsX.sum());
+        winsO.add(other.winsO.sum());
+        draws.add(other.draws.sum());
+        gamesPlayed.add(other.gamesPlayed.sum());
+        for (PlayerStats theirs : other.players.values()) {
+            PlayerStats mine = statsFor(theirs.name);
+            mine.wins.add(theirs.wins.sum());
+            mine.losses.add(theirs.losses.sum());
+            mine.draws.add(theirs.draws.sum());
+            mine.bestStreak.accumulateAndGet(theirs.bestStreak.get(), Math::max);
+            rank(mine);
+        }
+    }
+    
+    /**
+     * Returns the number of games won by X.
+     */
+    public long getWinsX() {
+        return winsX.sum();
+    }
+    
+    /**
+     * Returns the number of games won by O.
+     */
+    public long getWinsO() {
+        return winsO.sum();
+    }
+    
+    /**
+     * Returns the number of drawn games.
+     */
+    public long getDraws() {
+        return draws.sum();
+    }
+    
+    /**
+     * Returns the total number of games played.
+     */
+    public long getGamesPlayed() {
+        return gamesPlayed.sum();
+    }
+    
+    /**
+     * Returns the statistics of the named player, or null if they have not played.
+     */
+    public PlayerStats getPlayerStats(String name) {
+        return players.get(name);
+    }
+    
+    /**
+     * Returns the players with the most wins, best first. Ties are broken by name.
+     */
+    public List<Standing> getLeaderboard() {
+        List<Standing> top = new ArrayList<>(leaderboardSize);
+        for (Standing standing : leaderboard.descendingSet()) {
+            if (top.size() == leaderboardSize)
+                break;
+            top.add(standing);
+        }
+        return top;
     }
     
     /**
      * Returns a formatted score string.
      */
     public String getScoreString(String playerXName, String playerOName) {
+        // Each counter is read once, without blocking writers.
+        long x = winsX.sum();
+        long o = winsO.sum();
+        long d = draws.sum();
+        long games = gamesPlayed.sum();
         return String.format("Score: %s: %d wins | %s: %d wins | Draws: %d | Games Played: %d",
-                             playerXName, winsX, playerOName, winsO, draws, gamesPlayed);
+                             playerXName, x, playerOName, o, d, games);
+    }
+    
+    /**
+     * Returns the statistics of the named player, creating them on first use.
+     */
+    private PlayerStats statsFor(String name) {
+        return players.computeIfAbsent(name, PlayerStats::new);
+    }
+    
+    /**
+     * Moves the player's leaderboard entry to their current number of wins. Only the
+     * player's own entry is locked, so updates for different players run in parallel.
+     */
+    private void rank(PlayerStats stats) {
+        synchronized (stats) {
+            long wins = stats.wins.sum();
+            if (wins == stats.rankedWins)
+                return;
+            Standing current = new Standing(stats.name, wins);
+            if (leaderboard.size() >= leaderboardSize && current.compareTo(leaderboard.first()) <= 0)
+                return;
+            leaderboard.add(current);
+            leaderboard.remove(new Standing(stats.name, stats.rankedWins));
+            stats.rankedWins = wins;
+        }
+        // Drop whoever fell off the bottom; they come back if they overtake the last place.
+        while (leaderboard.size() > leaderboardSize) {
+            Standing last = leaderboard.pollFirst();
+            if (last == null)
+                break;
+            PlayerStats dropped = players.get(last.getName());
+            synchronized (dropped) {
+                if (dropped.rankedWins == last.getWins())
+                    dropped.rankedWins = 0;
+            }
+        }
+    }
+    
+    /**
+     * The results of one named player. Counters may be read at any time.
+     */
+    public static class PlayerStats {
+        private final String name;
+        private final LongAdder wins = new LongAdder();
+        private final LongAdder losses = new LongAdder();
+        private final LongAdder draws = new LongAdder();
+        private final AtomicInteger streak = new AtomicInteger();
+        private final AtomicInteger bestStreak = new AtomicInteger();
+        // The wins of this player's leaderboard entry, or 0 if it has none; guarded by this.
+        private long rankedWins;
+        
+        private PlayerStats(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * Records a win and extends the current streak.
+         */
+        private void recordWin() {
+            wins.increment();
+            int current = streak.incrementAndGet();
+            bestStreak.accumulateAndGet(current, Math::max);
+        }
+        
+        /**
+         * Records a loss and ends the current streak.
+         */
+        private void recordLoss() {
+            losses.increment();
+            streak.set(0);
+        }
+        
+        /**
+         * Records a draw and ends the current streak.
+         */
+        private void recordDraw() {
+            draws.increment();
+            streak.set(0);
+        }
+        
+        /**
+         * Returns the player's name.
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Returns the number of games won.
+         */
+        public long getWins() {
+            return wins.sum();
+        }
+        
+        /**
+         * Returns the number of games lost.
+         */
+        public long getLosses() {
+            return losses.sum();
+        }
+        
+        /**
+         * Returns the number of games drawn.
+         */
+        public long getDraws() {
+            return draws.sum();
+        }
+        
+        /**
+         * Returns the number of games won in a row up to the last game.
+         */
+        public int getStreak() {
+            return streak.get();
+        }
+        
+        /**
+         * Returns the longest run of consecutive wins.
+         */
+        public int getBestStreak() {
+            return bestStreak.get();
+        }
+    }
+    
+    /**
+     * An immutable leaderboard entry, ordered by wins and then by name.
+     */
+    public static final class Standing implements Comparable<Standing> {
+        private final String name;
+        private final long wins;
+        
+        Standing(String name, long wins) {
+            this.name = name;
+            this.wins = wins;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getWins() {
+            return wins;
+        }
+        
+        @Override
+        public int compareTo(Standing other) {
+            int byWins = Long.compare(wins, other.wins);
+            return byWins != 0 ? byWins : other.name.compareTo(name);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Standing && compareTo((Standing) other) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + Long.hashCode(wins);
+        }
+        
+        @Override
+        public String toString() {
+            return name + ": " + wins;
+        }
     }
 }
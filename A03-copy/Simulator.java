@@ -0,0 +1,212 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * This class plays many games between two players without a GUI, spread over
+ * the cores of a fork-join pool.
+ * 
+ * Every worker thread gets its own TicTacToeGame, its own pair of players from
+ * the given suppliers, and its own Scoreboard, so workers share nothing while
+ * games are running. The scoreboards are merged once all games are done. The
+ * starting player alternates from one game to the next.
+ * 
+ * From the command line:
+ * java Simulator games [size winLength xPlayer oPlayer], where a player is
+ * random, heuristic, solver[:millisPerMove], or mcts[:millisPerMove]. All solver
+ * players share one transposition table, whose hit rate is printed at the end.
+ * Without a time, the solver searches to the end on boards of up to nine cells
+ * and for 100 ms a move on larger ones, which it could not finish.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class Simulator {
+    // Batches smaller than this are played on one thread instead of being split further.
+    private static final long GAMES_PER_TASK = 1024;
+    // Boards up to this many cells are solved to the end when no time is given.
+    private static final int SOLVED_CELLS = 9;
+    // Default milliseconds per move for searching players on larger boards.
+    private static final long DEFAULT_MILLIS = 100;
+    
+    private final int size;
+    private final int winLength;
+    private final Supplier<? extends Player> xPlayers;
+    private final Supplier<? extends Player> oPlayers;
+    private final ForkJoinPool pool;
+    private long elapsedNanos;
+    private long gamesRun;
+    
+    /**
+     * Constructs a simulator that runs on the common fork-join pool.
+     * @param xPlayers creates the X player for each worker thread
+     * @param oPlayers creates the O player for each worker thread
+     */
+    public Simulator(int size, int winLength, Supplier<? extends Player> xPlayers, Supplier<? extends Player> oPlayers) {
+        this(size, winLength, xPlayers, oPlayers, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Constructs a simulator that runs on the given fork-join pool.
+     */
+    public Simulator(int size, int winLength, Supplier<? extends Player> xPlayers, Supplier<? extends Player> oPlayers,
+                     ForkJoinPool pool) {
+        this.size = size;
+        this.winLength = winLength;
+        this.xPlayers = xPlayers;
+        this.oPlayers = oPlayers;
+        this.pool = pool;
+    }
+    
+    /**
+     * Plays the given number of games and returns the combined results.
+     */
+    public Scoreboard run(long games) {
+        Queue<Worker> workers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Worker> local = ThreadLocal.withInitial(() -> {
+            Worker worker = new Worker();
+            workers.add(worker);
+            return worker;
+        });
+        long start = System.nanoTime();
+        pool.invoke(new Batch(local, 0, games));
+        elapsedNanos = System.nanoTime() - start;
+        gamesRun = games;
+        
+        Scoreboard total = new Scoreboard();
+        for (Worker worker : workers)
+            total.merge(worker.scoreboard);
+        return total;
+    }
+    
+    /**
+     * Returns how long the last run took, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Returns the number of games per second played by the last run.
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : gamesRun * 1e9 / elapsedNanos;
+    }
+    
+    /**
+     * Plays one game from the given starting player to the end and returns the
+     * winner ("X", "O", or "T" for tie).
+     * @throws IllegalStateException if a player chooses an occupied cell.
+     */
+    public static String playGame(TicTacToeGame game, String startingPlayer, Player x, Player o) {
+        int n = game.getSize();
+        game.initializeGame(startingPlayer);
+        while (!game.isGameOver()) {
+            Player player = game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X) ? x : o;
+            int move = player.chooseMove(game);
+            if (!game.makeMove(move / n, move % n))
+                throw new IllegalStateException(game.getCurrentPlayer() + " chose occupied cell " + move);
+            if (!game.isGameOver())
+                game.switchPlayer();
+        }
+        return game.getWinner();
+    }
+    
+    /**
+     * The state kept by one worker thread.
+     */
+    private class Worker {
+        final TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        final Player x = xPlayers.get();
+        final Player o = oPlayers.get();
+        final Scoreboard scoreboard = new Scoreboard();
+    }
+    
+    /**
+     * Plays games first (inclusive) to last (exclusive), splitting in half until the
+     * batch is small enough.
+     */
+    private class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ThreadLocal<Worker> local;
+        private final long first;
+        private final long last;
+        
+        Batch(ThreadLocal<Worker> local, long first, long last) {
+            this.local = local;
+            this.first = first;
+            this.last = last;
+        }
+        
+        @Override
+        protected void compute() {
+            if (last - first > GAMES_PER_TASK) {
+                long middle = (first + last) >>> 1;
+                invokeAll(new Batch(local, first, middle), new Batch(local, middle, last));
+                return;
+            }
+            Worker worker = local.get();
+            for (long i = first; i < last; i++) {
+                String starter = (i & 1) == 0 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+                String winner = playGame(worker.game, starter, worker.x, worker.o);
+                if (winner.equals(TicTacToeGame.TIE))
+                    worker.scoreboard.recordDraw();
+                else
+                    worker.scoreboard.recordWin(winner);
+            }
+        }
+    }
+    
+    /**
+     * Returns a supplier of players for a command-line name:
+     * random, heuristic, solver[:millisPerMove], or mcts[:millisPerMove]. Solver players
+     * search with the given shared table, without a time limit only on boards small
+     * enough to solve. The Monte Carlo player searches on one thread, since the
+     * simulator already keeps every core busy.
+     */
+    static Supplier<Player> playersNamed(String name, int size, EvaluationCache table) {
+        if (name.equals("random"))
+            return RandomPlayer::new;
+        if (name.equals("heuristic"))
+            return HeuristicPlayer::new;
+        if (name.startsWith("solver")) {
+            long millis = name.contains(":") ? Long.parseLong(name.substring(name.indexOf(':') + 1))
+                                              : size * size <= SOLVED_CELLS ? 0 : DEFAULT_MILLIS;
+            return () -> new SolverPlayer(millis, table);
+        }
+        if (name.startsWith("mcts")) {
+            long millis = name.contains(":") ? Long.parseLong(name.substring(name.indexOf(':') + 1)) : DEFAULT_MILLIS;
+            return () -> new MctsPlayer(millis, 0, 1);
+        }
+        throw new IllegalArgumentException("Unknown player: " + name);
+    }
+    
+    /**
+     * Runs a simulation from the command line and prints the results and games per second.
+     */
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : TicTacToeGame.DEFAULT_SIZE;
+        int winLength = args.length > 2 ? Integer.parseInt(args[2]) : size;
+        String xName = args.length > 3 ? args[3] : "random";
+        String oName = args.length > 4 ? args[4] : "random";
+        
+        EvaluationCache table = new EvaluationCache(Solver.DEFAULT_TABLE_BITS);
+        Metrics.registerCache("simulator.solver", table);
+        Metrics.export();
+        Simulator simulator = new Simulator(size, winLength, playersNamed(xName, size, table),
+                                            playersNamed(oName, size, table));
+        Scoreboard scoreboard = simulator.run(games);
+        System.out.println(scoreboard.getScoreString(xName + " (X)", oName + " (O)"));
+        System.out.printf("%d games in %.2f s on %d threads: %.0f games/s%n", games,
+                          simulator.getElapsedNanos() / 1e9, simulator.pool.getParallelism(),
+                          simulator.getGamesPerSecond());
+        if (table.getStores() > 0) {
+            System.out.printf("Solver table: %.1f%% hits, %d stores, %d evictions%n", table.getHitRate() * 100,
+                              table.getStores(), table.getEvictions());
+        }
+    }
+}
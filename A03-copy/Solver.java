@@ -0,0 +1,520 @@
+/**
+ * This class computes moves for a TicTacToeGame using negamax search with
+ * alpha-beta pruning.
+ * 
+ * Positions are stored in a fixed-size transposition table, an EvaluationCache,
+ * keyed by the canonical Zobrist key from PositionKeys, so positions that are
+ * equivalent by symmetry share a single table entry. The search deepens iteratively and stops
+ * when its time budget runs out, which keeps it usable on large boards where the
+ * game tree cannot be searched to the end, or when its thread is interrupted,
+ * so that a search on a background thread can be cancelled. The classic 3x3 game
+ * is solved completely in a few milliseconds.
+ * 
+ * A Solver is not thread-safe; use one instance per thread. Solvers on several
+ * threads can share one EvaluationCache, so that what one has searched saves the
+ * others the work.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class Solver {
+    // Score for a win on the next move; wins further away score slightly less.
+    public static final int WIN_SCORE = 1 << 24;
+    // Deepest search attempted when the remaining game cannot be searched to the end.
+    public static final int MAX_DEPTH = 64;
+    public static final int DEFAULT_TABLE_BITS = 18;
+    
+    private static final int EMPTY = 0;
+    private static final int X = 1;
+    private static final int O = 2;
+    
+    private static final int FLAG_EXACT = 0;
+    private static final int FLAG_LOWER = 1;
+    private static final int FLAG_UPPER = 2;
+    
+    // Boards up to this size consider every empty cell; larger boards only consider cells near stones.
+    private static final int SMALL_BOARD = 5;
+    private static final int NEIGHBOURHOOD = 2;
+    
+    private static final int[] DIR_ROW = {0, 1, 1, 1};
+    private static final int[] DIR_COL = {1, 0, 1, -1};
+    
+    private final int size;
+    private final int winLength;
+    private final int cells;
+    
+    // Current position: X, O or EMPTY per cell, and the number of stones near each cell.
+    private final byte[] board;
+    private final byte[] near;
+    private int toMove;
+    private int empties;
+    
+    private final PositionKeys keys;
+    private final long[] hashes = new long[PositionKeys.SYMMETRIES];
+    private int canonicalSymmetry;
+    
+    private final EvaluationCache table;
+    
+    // Move lists for every ply share one stack; moveStart[ply] is where a ply's moves begin.
+    private final int[] moveStack;
+    private final int[] scoreStack;
+    private final int[] moveStart = new int[MAX_DEPTH + 2];
+    
+    private long deadline;
+    private boolean timeUp;
+    private long nodes;
+    private int rootBestMove;
+    private int lastScore;
+    private int lastDepth;
+    
+    /**
+     * Constructs a solver for size x size boards where winLength marks in a row win,
+     * using the default transposition table size.
+     */
+    public Solver(int size, int winLength) {
+        this(size, winLength, DEFAULT_TABLE_BITS);
+    }
+    
+    /**
+     * Constructs a solver for size x size boards where winLength marks in a row win.
+     * @param tableBits the transposition table holds 2^tableBits entries of 20 bytes each
+     */
+    public Solver(int size, int winLength, int tableBits) {
+        this(size, winLength, new EvaluationCache(tableBits));
+    }
+    
+    /**
+     * Constructs a solver for size x size boards where winLength marks in a row win,
+     * using the given transposition table, which other solvers for the same board may share.
+     */
+    public Solver(int size, int winLength, EvaluationCache table) {
+        this.size = size;
+        this.winLength = winLength;
+        cells = size * size;
+        board = new byte[cells];
+        near = new byte[cells];
+        
+        keys = PositionKeys.of(size, winLength);
+        this.table = table;
+        
+        moveStack = new int[cells * (MAX_DEPTH + 1)];
+        scoreStack = new int[cells * (MAX_DEPTH + 1)];
+    }
+    
+    /**
+     * Returns the best move for the current player of the given game, searching for at
+     * most timeLimitMillis milliseconds (0 means no limit). The move is encoded as
+     * row * size + col, or -1 if the game is already over.
+     */
+    public int findBestMove(TicTacToeGame game, long timeLimitMillis) {
+        load(game);
+        return search(MAX_DEPTH, timeLimitMillis);
+    }
+    
+    /**
+     * Returns the best move for the current player of the given game, searching at most
+     * maxDepth plies deep and for at most timeLimitMillis milliseconds (0 means no limit).
+     */
+    public int findBestMove(TicTacToeGame game, int maxDepth, long timeLimitMillis) {
+        load(game);
+        return search(maxDepth, timeLimitMillis);
+    }
+    
+    /**
+     * Solves the given position completely and returns its value for the current player:
+     * 1 for a win, 0 for a draw, or -1 for a loss. Only practical on small boards.
+     */
+    public int solve(TicTacToeGame game) {
+        load(game);
+        if (game.isGameOver())
+            return 0;
+        search(empties, 0);
+        return Integer.signum(lastScore);
+    }
+    
+    /**
+     * Grades a recorded game by solving the position before and after each move.
+     * Entry i of the result is how much move i lowered the mover's game-theoretic
+     * value: 0 for a perfect move, 1 for turning a win into a draw or a draw into
+     * a loss, and 2 for throwing away a win. Only practical on small boards.
+     *
+     * @param startingPlayer the player who made the first move
+     * @param moves the moves of the game, each encoded as row * size + col
+     */
+    public int[] gradeGame(String startingPlayer, int[] moves) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, startingPlayer);
+        int[] grades = new int[moves.length];
+        for (int i = 0; i < moves.length && !game.isGameOver(); i++) {
+            int before = solve(game);
+            game.makeMove(moves[i] / size, moves[i] % size);
+            int after;
+            if (game.isGameOver()) {
+                after = game.getWinner().equals(TicTacToeGame.TIE) ? 0 : 1;
+            } else {
+                game.switchPlayer();
+                after = -solve(game);
+            }
+            grades[i] = before - after;
+        }
+        return grades;
+    }
+    
+    /**
+     * Returns the score of the last search from the point of view of the player to move.
+     * Scores beyond half of WIN_SCORE in either direction are forced wins or losses.
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+    
+    /**
+     * Returns the depth of the last completed iteration of the last search.
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+    
+    /**
+     * Returns the number of positions visited by the last search.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+    
+    /**
+     * Returns the transposition table.
+     */
+    public EvaluationCache getTable() {
+        return table;
+    }
+    
+    /**
+     * Clears the transposition table.
+     */
+    public void clear() {
+        table.clear();
+    }
+    
+    /**
+     * Copies the position of the given game into the solver's own board.
+     */
+    private void load(TicTacToeGame game) {
+        if (game.getSize() != size || game.getWinLength() != winLength)
+            throw new IllegalArgumentException("Solver is for " + size + "x" + size + ", " + winLength + " in a row");
+        for (int i = 0; i < cells; i++) {
+            board[i] = EMPTY;
+            near[i] = 0;
+        }
+        for (int s = 0; s < PositionKeys.SYMMETRIES; s++)
+            hashes[s] = 0L;
+        empties = cells;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                String cell = game.getCell(r, c);
+                if (cell.equals(TicTacToeGame.PLAYER_X))
+                    place(r * size + c, X);
+                else if (cell.equals(TicTacToeGame.PLAYER_O))
+                    place(r * size + c, O);
+            }
+        }
+        toMove = game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X) ? X : O;
+        if (game.isGameOver())
+            empties = 0;
+    }
+    
+    /**
+     * Runs iterative deepening from the loaded position and returns the best move found.
+     */
+    private int search(int maxDepth, long timeLimitMillis) {
+        nodes = 0;
+        timeUp = false;
+        deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1000000L : 0L;
+        lastScore = 0;
+        lastDepth = 0;
+        if (empties == 0)
+            return -1;
+        int depthLimit = Math.min(Math.min(maxDepth, empties), MAX_DEPTH);
+        int bestMove = -1;
+        moveStart[0] = 0;
+        table.newSearch();
+        for (int depth = 1; depth <= depthLimit; depth++) {
+            rootBestMove = -1;
+            int score = negamax(depth, -WIN_SCORE - 1, WIN_SCORE + 1, 0);
+            if (timeUp) {
+                // Use what the interrupted iteration found only if nothing better is known.
+                if (bestMove < 0)
+                    bestMove = rootBestMove >= 0 ? rootBestMove : moveStack[0];
+                break;
+            }
+            bestMove = rootBestMove;
+            lastScore = score;
+            lastDepth = depth;
+            if (Math.abs(score) > WIN_SCORE / 2)
+                break;
+        }
+        return bestMove;
+    }
+    
+    /**
+     * Searches the loaded position to the given depth and returns its score for the
+     * player to move. The previous move is known not to have won.
+     */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if (empties == 0)
+            return 0;
+        if ((++nodes & 255) == 0 && ((deadline != 0 && System.nanoTime() > deadline)
+                                     || Thread.currentThread().isInterrupted()))
+            timeUp = true;
+        if (timeUp)
+            return 0;
+        if (depth == 0)
+            return evaluate();
+        
+        int alphaOrig = alpha;
+        long key = canonicalKey();
+        int tableMove = -1;
+        long data = table.get(key);
+        if (data != EvaluationCache.MISS) {
+            int value = fromTable((int) data, ply);
+            int entryDepth = (int) (data >>> 32) & 0x3FFF;
+            int flag = (int) (data >>> 46) & 3;
+            int move = (int) (data >>> 48) & 0xFFFF;
+            if (move != 0)
+                tableMove = keys.unmap(canonicalSymmetry, move - 1);
+            if (entryDepth >= depth) {
+                if (flag == FLAG_EXACT)
+                    return recordRoot(ply, tableMove, value);
+                if (flag == FLAG_LOWER)
+                    alpha = Math.max(alpha, value);
+                else
+                    beta = Math.min(beta, value);
+                if (alpha >= beta)
+                    return recordRoot(ply, tableMove, value);
+            }
+        }
+        int symmetryAtEntry = canonicalSymmetry;
+        
+        int start = moveStart[ply];
+        int end = generateMoves(start, tableMove);
+        moveStart[ply + 1] = end;
+        if (end == start)
+            return evaluate();
+        int best = -WIN_SCORE - 1;
+        int bestMove = -1;
+        int player = toMove;
+        for (int i = start; i < end; i++) {
+            int move = moveStack[i];
+            place(move, player);
+            int score;
+            if (isWin(move, player)) {
+                score = WIN_SCORE - ply - 1;
+            } else {
+                toMove = O + X - player;
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                toMove = player;
+            }
+            remove(move, player);
+            if (timeUp)
+                return best;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0)
+                    rootBestMove = move;
+                if (score > alpha)
+                    alpha = score;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        
+        int flag = best <= alphaOrig ? FLAG_UPPER : best >= beta ? FLAG_LOWER : FLAG_EXACT;
+        table.put(key, (toTable(best, ply) & 0xFFFFFFFFL)
+                       | ((long) depth << 32)
+                       | ((long) flag << 46)
+                       | ((long) (keys.map(symmetryAtEntry, bestMove) + 1) << 48), depth);
+        return recordRoot(ply, bestMove, best);
+    }
+    
+    /**
+     * Remembers the best move when returning from the root, and passes the score through.
+     */
+    private int recordRoot(int ply, int move, int score) {
+        if (ply == 0)
+            rootBestMove = move;
+        return score;
+    }
+    
+    /**
+     * Pushes the moves worth trying from the loaded position onto the move stack, best
+     * first, and returns the end of the list. The table move, if any, is tried first;
+     * the rest are ordered by how many stones are nearby and then by closeness to the centre.
+     */
+    private int generateMoves(int start, int tableMove) {
+        boolean small = size <= SMALL_BOARD;
+        int middle = size / 2;
+        // On an empty large board only the centre is worth considering.
+        if (!small && empties == cells) {
+            moveStack[start] = middle * size + middle;
+            return start + 1;
+        }
+        int end = start;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board[cell] != EMPTY || (!small && near[cell] == 0))
+                continue;
+            int score;
+            if (cell == tableMove) {
+                score = Integer.MAX_VALUE;
+            } else {
+                int distance = Math.abs(cell / size - middle) + Math.abs(cell % size - middle);
+                score = near[cell] * 64 - distance;
+            }
+            // Insertion sort into place.
+            int i = end++;
+            while (i > start && scoreStack[i - 1] < score) {
+                moveStack[i] = moveStack[i - 1];
+                scoreStack[i] = scoreStack[i - 1];
+                i--;
+            }
+            moveStack[i] = cell;
+            scoreStack[i] = score;
+        }
+        return end;
+    }
+    
+    /**
+     * Puts a stone for player on the given cell and updates the hashes and neighbour counts.
+     */
+    private void place(int cell, int player) {
+        board[cell] = (byte) player;
+        empties--;
+        keys.toggle(hashes, cell, player == X);
+        updateNear(cell, 1);
+    }
+    
+    /**
+     * Removes the stone of player from the given cell, undoing place.
+     */
+    private void remove(int cell, int player) {
+        board[cell] = EMPTY;
+        empties++;
+        keys.toggle(hashes, cell, player == X);
+        updateNear(cell, -1);
+    }
+    
+    /**
+     * Adds delta to the neighbour count of every cell within NEIGHBOURHOOD of the given cell.
+     */
+    private void updateNear(int cell, int delta) {
+        if (size <= SMALL_BOARD)
+            return;
+        int row = cell / size;
+        int col = cell % size;
+        for (int r = Math.max(0, row - NEIGHBOURHOOD); r <= Math.min(size - 1, row + NEIGHBOURHOOD); r++) {
+            for (int c = Math.max(0, col - NEIGHBOURHOOD); c <= Math.min(size - 1, col + NEIGHBOURHOOD); c++)
+                near[r * size + c] += delta;
+        }
+    }
+    
+    /**
+     * Returns the key of the loaded position: the smallest of its eight symmetric hashes,
+     * combined with the side to move. Remembers which symmetry produced it.
+     */
+    private long canonicalKey() {
+        canonicalSymmetry = PositionKeys.canonicalSymmetry(hashes);
+        return keys.canonicalKey(hashes, toMove == X);
+    }
+    
+    /**
+     * Checks whether the stone just placed on cell completes a line for player.
+     */
+    private boolean isWin(int cell, int player) {
+        int row = cell / size;
+        int col = cell % size;
+        for (int d = 0; d < DIR_ROW.length; d++) {
+            int count = 1 + countRun(row, col, DIR_ROW[d], DIR_COL[d], player)
+                          + countRun(row, col, -DIR_ROW[d], -DIR_COL[d], player);
+            if (count >= winLength)
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Counts player's consecutive stones next to (row, col) in the given direction.
+     */
+    private int countRun(int row, int col, int dRow, int dCol, int player) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size
+               && board[r * size + c] == player) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+    
+    /**
+     * Estimates the loaded position for the player to move. Every window of winLength
+     * cells that holds stones of only one player counts for that player, with more
+     * stones weighing exponentially more.
+     */
+    private int evaluate() {
+        long total = 0;
+        for (int d = 0; d < DIR_ROW.length; d++) {
+            int dRow = DIR_ROW[d];
+            int dCol = DIR_COL[d];
+            for (int r = 0; r < size; r++) {
+                int endRow = r + dRow * (winLength - 1);
+                if (endRow >= size)
+                    break;
+                for (int c = 0; c < size; c++) {
+                    int endCol = c + dCol * (winLength - 1);
+                    if (endCol < 0 || endCol >= size)
+                        continue;
+                    int mine = 0;
+                    int theirs = 0;
+                    for (int i = 0; i < winLength; i++) {
+                        int stone = board[(r + i * dRow) * size + c + i * dCol];
+                        if (stone == toMove)
+                            mine++;
+                        else if (stone != EMPTY)
+                            theirs++;
+                    }
+                    if (theirs == 0 && mine > 0)
+                        total += 1L << Math.min(2 * mine, 20);
+                    else if (mine == 0 && theirs > 0)
+                        total -= 1L << Math.min(2 * theirs, 20);
+                }
+            }
+        }
+        long limit = WIN_SCORE / 2;
+        return (int) Math.max(-limit, Math.min(limit, total));
+    }
+    
+    /**
+     * Converts a score relative to the root into one relative to the current position,
+     * so that win distances stay correct when the entry is found at another ply.
+     */
+    private int toTable(int score, int ply) {
+        if (score > WIN_SCORE / 2)
+            return score + ply;
+        if (score < -WIN_SCORE / 2)
+            return score - ply;
+        return score;
+    }
+    
+    /**
+     * Undoes toTable for an entry found at the given ply.
+     */
+    private int fromTable(int score, int ply) {
+        if (score > WIN_SCORE / 2)
+            return score - ply;
+        if (score < -WIN_SCORE / 2)
+            return score + ply;
+        return score;
+    }
+}
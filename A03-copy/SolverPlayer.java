@@ -0,0 +1,55 @@
+/**
+ * A player that searches with a Solver for a fixed time per move. On the classic
+ * 3x3 board it plays perfectly. It ponders by searching the opponent's position,
+ * which leaves the positions that follow each of their replies in its table.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class SolverPlayer implements Player {
+    private final long millisPerMove;
+    private final EvaluationCache table;
+    private Solver solver;
+    
+    /**
+     * Constructs a solver player that thinks for at most millisPerMove milliseconds
+     * (0 means until the search is complete).
+     */
+    public SolverPlayer(long millisPerMove) {
+        this(millisPerMove, null);
+    }
+    
+    /**
+     * Constructs a solver player that searches with the given transposition table, which
+     * players on other threads may share as long as they all play the same board size.
+     */
+    public SolverPlayer(long millisPerMove, EvaluationCache table) {
+        this.millisPerMove = millisPerMove;
+        this.table = table;
+    }
+    
+    @Override
+    public int chooseMove(TicTacToeGame game) {
+        long start = System.nanoTime();
+        int move = solverFor(game).findBestMove(game, millisPerMove);
+        Metrics.aiThought("solver", start, game.getSize());
+        return move;
+    }
+    
+    @Override
+    public void ponder(TicTacToeGame game, long millis) {
+        solverFor(game).findBestMove(game, millis);
+    }
+    
+    /**
+     * Returns the solver, created on first use for the board size of the game.
+     */
+    private Solver solverFor(TicTacToeGame game) {
+        if (solver == null) {
+            solver = table == null ? new Solver(game.getSize(), game.getWinLength())
+                                   : new Solver(game.getSize(), game.getWinLength(), table);
+        }
+        return solver;
+    }
+}
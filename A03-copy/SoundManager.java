@@ -1,47 +1,266 @@
+import java.io.IOException;
 import java.net.URL;
-import java.applet.AudioClip;
-import java.applet.Applet;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
  * This class loads and plays sound effects.
  * 
+ * The audio line is opened and the sounds are decoded into PCM samples once, on a
+ * background thread started when the SoundManager is created, so that creating it
+ * costs nothing on the caller's thread and a window can appear without waiting for
+ * the audio system; sounds asked for before loading has finished are skipped.
+ * Playing a sound only records a request and returns; a mixer thread
+ * adds the samples of every sound that is playing and writes them to the line in
+ * short periods, so sounds played in quick succession overlap instead of cutting
+ * each other off. Without an audio device, as on a server, sounds are silently
+ * skipped.
+ * 
  * @author Dumany Lombe
  * @version Student Number: 101316658
  */
 public class SoundManager {
+    // The format sounds are decoded to and mixed in: 44.1 kHz, 16-bit signed, stereo, little-endian.
+    private static final AudioFormat MIX_FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+    private static final int CHANNELS = 2;
+    private static final int FRAME_BYTES = 4;
+    // Frames mixed per write (about 6 ms), and periods buffered by the line ahead of the speaker.
+    private static final int PERIOD_FRAMES = 256;
+    private static final int LINE_PERIODS = 4;
+    // Most sounds playing at once; a new sound replaces the one that has played longest.
+    private static final int MAX_VOICES = 8;
+    
+    // Set by the loader thread before it sets loaded, and never changed after.
+    private Sound clickSound;
+    private Sound celebrationSound;
+    private SourceDataLine line;
+    private Thread mixer;
+    private volatile boolean loaded;
+    private final Thread loader;
+    private volatile boolean closed;
     
-    private AudioClip clickSound;
-    private AudioClip celebrationSound;
+    // The sounds playing, and how far each has played; only used by the mixer thread.
+    private final short[][] voices = new short[MAX_VOICES][];
+    private final int[] voicePositions = new int[MAX_VOICES];
+    private int voiceCount;
     
     /**
-     * Constructs a new SoundManager by attempting to load the "click.wav" and "celebration.wav"
-     * sound files from the current classpath. If successfully located, these sounds are stored
-     * as AudioClips for later playback. If a file is not found, the corresponding AudioClip
-     * field remains null.
+     * Constructs a new SoundManager and starts loading, in the background, the "click.wav"
+     * and "celebration.wav" sound files from the current classpath and opening the default
+     * audio line. A sound file that is not found or cannot be decoded is never played, and
+     * if no audio line is available nothing is loaded and no sound is played at all.
      */
     public SoundManager() {
-        // Load sound files; ensure click.wav and celebration.wav are available in your classpath.
-        URL clickURL = getClass().getResource("click.wav");
-        if (clickURL != null)
-            clickSound = Applet.newAudioClip(clickURL);
-        URL celebrationURL = getClass().getResource("celebration.wav");
-        if (celebrationURL != null)
-            celebrationSound = Applet.newAudioClip(celebrationURL);
+        loader = new Thread(this::open, "SoundManager-loader");
+        loader.setDaemon(true);
+        loader.start();
     }
     
     /**
-     * Plays the click sound.
+     * Plays the click sound. Returns immediately.
      */
     public void playClick() {
-        if (clickSound != null)
-            clickSound.play();
+        play(clickSound);
     }
     
     /**
-     * Plays the celebration sound.
+     * Plays the celebration sound. Returns immediately.
      */
     public void playCelebration() {
-        if (celebrationSound != null)
-            celebrationSound.play();
+        play(celebrationSound);
+    }
+    
+    /**
+     * Returns whether sounds can be heard, that is whether an audio line was opened. This
+     * is false until loading has finished.
+     */
+    public boolean isAudible() {
+        return loaded && line != null;
+    }
+    
+    /**
+     * Waits until the sounds are loaded, or until the given time has passed, and returns
+     * whether they are.
+     */
+    public boolean awaitLoaded(long millis) throws InterruptedException {
+        loader.join(millis);
+        return loaded;
+    }
+    
+    /**
+     * Stops the mixer thread and closes the audio line, once loading has finished.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            loader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (mixer == null)
+            return;
+        LockSupport.unpark(mixer);
+        try {
+            mixer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        line.close();
+    }
+    
+    /**
+     * Asks the mixer thread to start the sound.
+     */
+    private void play(Sound sound) {
+        if (!loaded || sound == null || mixer == null)
+            return;
+        sound.requests.incrementAndGet();
+        LockSupport.unpark(mixer);
+    }
+    
+    /**
+     * Mixes the sounds that are playing into the line, one period at a time, and sleeps
+     * while nothing plays. Writing to the line blocks once it holds LINE_PERIODS periods,
+     * which keeps this thread in step with the speaker.
+     */
+    private void mixLoop() {
+        int[] mix = new int[PERIOD_FRAMES * CHANNELS];
+        byte[] out = new byte[PERIOD_FRAMES * FRAME_BYTES];
+        while (!closed) {
+            startRequested(clickSound);
+            startRequested(celebrationSound);
+            if (voiceCount == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            Arrays.fill(mix, 0);
+            for (int v = voiceCount - 1; v >= 0; v--) {
+                short[] samples = voices[v];
+                int position = voicePositions[v];
+                int n = Math.min(mix.length, samples.length - position);
+                for (int i = 0; i < n; i++)
+                    mix[i] += samples[position + i];
+                if (position + n == samples.length)
+                    removeVoice(v);
+                else
+                    voicePositions[v] = position + n;
+            }
+            for (int i = 0; i < mix.length; i++) {
+                int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+                out[2 * i] = (byte) sample;
+                out[2 * i + 1] = (byte) (sample >> 8);
+            }
+            line.write(out, 0, out.length);
+        }
+    }
+    
+    /**
+     * Starts a voice for each time the sound was asked for since the last period.
+     */
+    private void startRequested(Sound sound) {
+        if (sound == null)
+            return;
+        // More requests than voices within one period would only replace each other.
+        int requests = Math.min(MAX_VOICES, sound.requests.getAndSet(0));
+        for (int i = 0; i < requests; i++) {
+            if (voiceCount == MAX_VOICES) {
+                int oldest = 0;
+                for (int v = 1; v < voiceCount; v++) {
+                    if (voicePositions[v] > voicePositions[oldest])
+                        oldest = v;
+                }
+                removeVoice(oldest);
+            }
+            voices[voiceCount] = sound.samples;
+            voicePositions[voiceCount] = 0;
+            voiceCount++;
+        }
+    }
+    
+    /**
+     * Removes a voice by moving the last one into its place.
+     */
+    private void removeVoice(int v) {
+        voiceCount--;
+        voices[v] = voices[voiceCount];
+        voicePositions[v] = voicePositions[voiceCount];
+        voices[voiceCount] = null;
+    }
+    
+    /**
+     * Opens the audio line, decodes the sounds and starts the mixer thread.
+     */
+    private void open() {
+        line = openLine();
+        if (line != null) {
+            // Load sound files; ensure click.wav and celebration.wav are available in your classpath.
+            clickSound = load("click.wav");
+            celebrationSound = load("celebration.wav");
+            mixer = new Thread(this::mixLoop, "SoundManager-mixer");
+            mixer.setDaemon(true);
+            mixer.setPriority(Thread.MAX_PRIORITY);
+            mixer.start();
+        }
+        // Nothing could be heard without a line, so nothing is loaded.
+        loaded = true;
+    }
+    
+    /**
+     * Opens and starts the default audio line in the mixing format, or returns null if
+     * there is none.
+     */
+    private static SourceDataLine openLine() {
+        try {
+            SourceDataLine line = AudioSystem.getSourceDataLine(MIX_FORMAT);
+            line.open(MIX_FORMAT, PERIOD_FRAMES * FRAME_BYTES * LINE_PERIODS);
+            line.start();
+            return line;
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Decodes the named sound file into samples in the mixing format, or returns null if
+     * it is not found or cannot be decoded.
+     */
+    private Sound load(String name) {
+        URL url = getClass().getResource(name);
+        if (url == null)
+            return null;
+        try (AudioInputStream file = AudioSystem.getAudioInputStream(url);
+             AudioInputStream pcm = MIX_FORMAT.matches(file.getFormat())
+                 ? file : AudioSystem.getAudioInputStream(MIX_FORMAT, file)) {
+            byte[] bytes = pcm.readAllBytes();
+            short[] samples = new short[bytes.length / 2];
+            for (int i = 0; i < samples.length; i++)
+                samples[i] = (short) ((bytes[2 * i] & 0xFF) | (bytes[2 * i + 1] << 8));
+            return new Sound(samples);
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * A decoded sound, and the number of times it has been asked to play since the mixer
+     * last looked.
+     */
+    private static class Sound {
+        final short[] samples;
+        final AtomicInteger requests = new AtomicInteger();
+        
+        Sound(short[] samples) {
+            this.samples = samples;
+        }
     }
 }
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class broadcasts one match to any number of spectators. The session
+ * publishes each move once, as a delta of a few bits (the cell and the player)
+ * in a ring buffer, and every spectator reads the ring from a cursor of its own
+ * and encodes the protocol lines straight into a small buffer, so a move costs
+ * the session the same whether one or ten thousand are watching, and nothing is
+ * copied or formatted as a String per spectator.
+ * 
+ * A spectator whose socket is so slow that the ring is overwritten under it is
+ * not waited for: when it catches up it is sent the latest snapshot of the board,
+ * which the session encodes once every SNAPSHOT_INTERVAL moves and all the
+ * spectators share, and carries on from there.
+ * 
+ * Spectators see: BOARD moveCount followed by one line per row, ROW cells, using
+ * X, O and '.' for empty (on joining and after falling behind), then MOVED symbol
+ * row col for every move, and finally OVER winner or LEFT.
+ * 
+ * Publishing is for one thread at a time, the session under its lock; any number
+ * of threads may stream.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class SpectatorFeed {
+    public static final int CAPACITY = 256;
+    public static final int SNAPSHOT_INTERVAL = CAPACITY / 4;
+    
+    // An entry is seq << SEQ_SHIFT | kind << KIND_SHIFT | value; the sequence number
+    // lets a reader tell a slot it wants from one that has been written over.
+    private static final int SEQ_SHIFT = 20;
+    private static final int KIND_SHIFT = 16;
+    private static final int VALUE_MASK = (1 << KIND_SHIFT) - 1;
+    private static final int MOVE_X = 1;
+    private static final int MOVE_O = 2;
+    private static final int END = 3;
+    // The value of an END entry when a player left rather than the game ending.
+    private static final int LEFT = 'L';
+    
+    // Each spectator's buffer; flushed when a line might not fit, and whenever it has caught up.
+    private static final int BUFFER = 512;
+    private static final int LONGEST_LINE = 24;
+    private static final byte[] MOVED_X = (GameServer.MOVED + " X ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MOVED_O = (GameServer.MOVED + " O ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OVER = (GameServer.OVER + " ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROW = (GameServer.ROW + " ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LEFT_LINE = (GameServer.LEFT + "\n").getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * The board as it was after the first seq entries, encoded as protocol lines.
+     */
+    private static final class Snapshot {
+        final long seq;
+        final byte[] lines;
+        
+        Snapshot(long seq, byte[] lines) {
+            this.seq = seq;
+            this.lines = lines;
+        }
+    }
+    
+    private final int size;
+    private final AtomicLongArray entries = new AtomicLongArray(CAPACITY);
+    private volatile long published;
+    private volatile Snapshot snapshot;
+    // Replaced and counted down on every publish; counting down wakes the waiting
+    // spectators one after another rather than all from the publishing thread.
+    private volatile CountDownLatch signal = new CountDownLatch(1);
+    
+    // The publisher's own copy of the board, read only to encode snapshots.
+    private final byte[] cells;
+    private int moveCount;
+    
+    /**
+     * Creates the feed of a match on a size x size board, with no moves yet.
+     */
+    public SpectatorFeed(int size) {
+        this.size = size;
+        cells = new byte[size * size];
+        Arrays.fill(cells, (byte) '.');
+        snapshot = encodeSnapshot(0);
+    }
+    
+    /**
+     * Publishes a move by the given player, PLAYER_X or PLAYER_O.
+     */
+    public void publishMove(int row, int col, String player) {
+        int cell = row * size + col;
+        boolean x = TicTacToeGame.PLAYER_X.equals(player);
+        cells[cell] = (byte) (x ? 'X' : 'O');
+        moveCount++;
+        publish(x ? MOVE_X : MOVE_O, cell);
+    }
+    
+    /**
+     * Publishes the end of the game: winner is X, O, or T for tie.
+     */
+    public void publishOver(String winner) {
+        publish(END, winner.charAt(0));
+    }
+    
+    /**
+     * Publishes that a player left before the end of the game.
+     */
+    public void publishLeft() {
+        publish(END, LEFT);
+    }
+    
+    /**
+     * Returns the number of entries published so far.
+     */
+    public long getPublished() {
+        return published;
+    }
+    
+    /**
+     * Sends the match to a spectator, from the current board to the end of the game,
+     * returning once OVER or LEFT has been written. Blocks while waiting for moves.
+     */
+    public void stream(LineChannel channel) throws IOException, InterruptedException {
+        ByteBuffer out = ByteBuffer.allocate(BUFFER);
+        long cursor = -1;
+        while (true) {
+            long end = published;
+            if (cursor < 0 || end - cursor > CAPACITY) {
+                // Joining, or lapped: start again from the shared snapshot.
+                Snapshot base = snapshot;
+                flush(channel, out);
+                channel.writeBytes(ByteBuffer.wrap(base.lines));
+                cursor = base.seq;
+                continue;
+            }
+            if (cursor == end) {
+                flush(channel, out);
+                await(cursor);
+                continue;
+            }
+            long entry = entries.getAcquire((int) cursor & (CAPACITY - 1));
+            if (entry >>> SEQ_SHIFT != cursor) {
+                cursor = -1;
+                continue;
+            }
+            if (out.remaining() < LONGEST_LINE)
+                flush(channel, out);
+            int kind = (int) (entry >>> KIND_SHIFT) & 3;
+            int value = (int) entry & VALUE_MASK;
+            if (kind == END) {
+                if (value == LEFT) {
+                    out.put(LEFT_LINE);
+                } else {
+                    out.put(OVER).put((byte) value).put((byte) '\n');
+                }
+                flush(channel, out);
+                return;
+            }
+            out.put(kind == MOVE_X ? MOVED_X : MOVED_O);
+            putNumber(out, value / size);
+            out.put((byte) ' ');
+            putNumber(out, value % size);
+            out.put((byte) '\n');
+            cursor++;
+        }
+    }
+    
+    /**
+     * Writes the next entry and wakes the spectators waiting for it.
+     */
+    private void publish(int kind, int value) {
+        long seq = published;
+        entries.setRelease((int) seq & (CAPACITY - 1), seq << SEQ_SHIFT | (long) kind << KIND_SHIFT | value);
+        published = seq + 1;
+        // The end is never in a snapshot, so that a lapped spectator still reads it from the ring.
+        if (kind != END && (seq + 1) % SNAPSHOT_INTERVAL == 0)
+            snapshot = encodeSnapshot(seq + 1);
+        CountDownLatch woken = signal;
+        signal = new CountDownLatch(1);
+        woken.countDown();
+    }
+    
+    /**
+     * Waits until an entry beyond cursor has been published.
+     */
+    private void await(long cursor) throws InterruptedException {
+        while (published == cursor) {
+            // Taken before checking again: publish replaces the latch only after the new entry is visible.
+            CountDownLatch next = signal;
+            if (published != cursor)
+                return;
+            next.await();
+        }
+    }
+    
+    /**
+     * Encodes the publisher's board as the lines of a snapshot taken after seq entries.
+     */
+    private Snapshot encodeSnapshot(long seq) {
+        byte[] header = (GameServer.BOARD + " " + moveCount + "\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] lines = new byte[header.length + size * (ROW.length + size + 1)];
+        System.arraycopy(header, 0, lines, 0, header.length);
+        int at = header.length;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(ROW, 0, lines, at, ROW.length);
+            at += ROW.length;
+            System.arraycopy(cells, row * size, lines, at, size);
+            at += size;
+            lines[at++] = '\n';
+        }
+        return new Snapshot(seq, lines);
+    }
+    
+    /**
+     * Writes the buffered lines, if any, and empties the buffer.
+     */
+    private static void flush(LineChannel channel, ByteBuffer out) throws IOException {
+        if (out.position() == 0)
+            return;
+        out.flip();
+        channel.writeBytes(out);
+        out.clear();
+    }
+    
+    /**
+     * Appends the decimal digits of a non-negative number.
+     */
+    private static void putNumber(ByteBuffer out, int number) {
+        if (number >= 10)
+            putNumber(out, number / 10);
+        out.put((byte) ('0' + number % 10));
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JRootPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class starts the game from the command line, as quickly as it can.
+ * 
+ * The window is built on the event dispatch thread and shown with default player
+ * names, and the names are only asked for once the board is on the screen; the
+ * sounds load in the background meanwhile. In headless mode the game is played
+ * in the terminal against the computer, and neither Swing nor the audio system
+ * is loaded at all.
+ * 
+ * Startup also gets faster with an application class-data sharing archive, made
+ * once by a training run that exits when it is done:
+ *   java -XX:ArchiveClassesAtExit=tictactoe.jsa -jar tic-tac-toe-core-1.0-SNAPSHOT.jar --train
+ *   java -XX:SharedArchiveFile=tictactoe.jsa -jar tic-tac-toe-core-1.0-SNAPSHOT.jar
+ * A training run with --exit instead of --train archives the classes of the window too.
+ * 
+ * java TicTacToe [--headless] [--train] [--cold] [--time] [--exit] [size [winLength]], where
+ *   --headless plays in the terminal, --train plays a few games between computer
+ *   players and exits, --cold starts the window as the game used to, building it on
+ *   the main thread and only counting it ready once the sounds have loaded, so that
+ *   the two can be compared, --time prints how long after the JVM started the board
+ *   could be played on, and --exit exits as soon as it could.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class TicTacToe {
+    // Games played by a training run, and how long the solver may think about each move.
+    private static final int TRAINING_GAMES = 20;
+    private static final long TRAINING_THINK_MILLIS = 20;
+    private static final long HEADLESS_THINK_MILLIS = 1000;
+    
+    private static long mainNanos;
+    
+    /**
+     * Starts the game as the command line asks.
+     */
+    public static void main(String[] args) throws IOException {
+        mainNanos = System.nanoTime();
+        boolean headless = false;
+        boolean train = false;
+        boolean time = false;
+        boolean exit = false;
+        boolean cold = false;
+        List<Integer> numbers = new ArrayList<>();
+        for (String arg : args) {
+            switch (arg) {
+                case "--headless":
+                    headless = true;
+                    break;
+                case "--train":
+                    train = true;
+                    break;
+                case "--time":
+                    time = true;
+                    break;
+                case "--exit":
+                    exit = true;
+                    break;
+                case "--cold":
+                    cold = true;
+                    break;
+                default:
+                    numbers.add(Integer.parseInt(arg));
+            }
+        }
+        int size = numbers.size() > 0 ? numbers.get(0) : TicTacToeGame.DEFAULT_SIZE;
+        int winLength = numbers.size() > 1 ? numbers.get(1) : size;
+        if (train) {
+            train(size, winLength);
+        } else if (headless) {
+            playInTerminal(size, winLength, time, exit);
+        } else if (cold) {
+            Window.showCold(size, winLength, time, exit);
+        } else {
+            Window.show(size, winLength, time, exit);
+        }
+    }
+    
+    /**
+     * Plays a few games between computer players, loading the classes a game needs.
+     */
+    private static void train(int size, int winLength) {
+        EvaluationCache table = new EvaluationCache(Solver.DEFAULT_TABLE_BITS);
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        Player solver = new SolverPlayer(TRAINING_THINK_MILLIS, table);
+        Player random = new RandomPlayer();
+        Scoreboard scoreboard = new Scoreboard();
+        for (int i = 0; i < TRAINING_GAMES; i++) {
+            String starter = (i & 1) == 0 ? TicTacToeGame.PLAYER_X : TicTacToeGame.PLAYER_O;
+            String winner = Simulator.playGame(game, starter, solver, random);
+            scoreboard.recordGame("solver", "random", winner);
+            if (size <= BoardSnapshot.MAX_SIZE)
+                game.snapshot();
+        }
+        System.out.println(scoreboard.getScoreString("solver", "random"));
+    }
+    
+    /**
+     * Plays one game in the terminal, the user as X against the computer as O. With time,
+     * reports when the board is first shown; with exit, stops there.
+     */
+    private static void playInTerminal(int size, int winLength, boolean time, boolean exit) throws IOException {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        Player computer = new SolverPlayer(HEADLESS_THINK_MILLIS, new EvaluationCache(Solver.DEFAULT_TABLE_BITS));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        while (!game.isGameOver()) {
+            int row;
+            int col;
+            if (game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_X)) {
+                System.out.print(boardText(game) + "Your move (row col, from 0): ");
+                System.out.flush();
+                if (time && game.getMoveCount() == 0)
+                    report("\nBoard interactive");
+                if (exit)
+                    return;
+                String line = in.readLine();
+                if (line == null || line.trim().equals("q"))
+                    return;
+                String[] fields = line.trim().split("\\s+");
+                try {
+                    row = Integer.parseInt(fields[0]);
+                    col = Integer.parseInt(fields[1]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.out.println("Enter a row and a column, or q to quit.");
+                    continue;
+                }
+                if (row < 0 || row >= size || col < 0 || col >= size || !game.isEmpty(row, col)) {
+                    System.out.println("That cell is not free.");
+                    continue;
+                }
+            } else {
+                int move = computer.chooseMove(game);
+                row = move / size;
+                col = move % size;
+                System.out.println("The computer plays " + row + " " + col + ".");
+            }
+            game.makeMove(row, col);
+            if (!game.isGameOver())
+                game.switchPlayer();
+        }
+        System.out.print(boardText(game));
+        String winner = game.getWinner();
+        System.out.println(winner.equals(TicTacToeGame.TIE) ? "It's a tie!"
+                           : winner.equals(TicTacToeGame.PLAYER_X) ? "You win!" : "The computer wins.");
+    }
+    
+    /**
+     * Returns the board as text, one line per row, with '.' for empty cells.
+     */
+    private static String boardText(TicTacToeGame game) {
+        int size = game.getSize();
+        StringBuilder text = new StringBuilder(size * (size + 1));
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++)
+                text.append(game.isEmpty(row, col) ? "." : game.getCell(row, col));
+            text.append('\n');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Prints how long after the JVM and after main started the given stage was reached.
+     */
+    static void report(String stage) {
+        long now = System.currentTimeMillis();
+        long sinceMain = (System.nanoTime() - mainNanos) / 1000000;
+        // Only loaded now, after the time is taken, since it is slow to load.
+        long sinceStart = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println(stage + " " + sinceStart + " ms after the JVM started, " + sinceMain + " ms after main");
+    }
+    
+    /**
+     * Shows the window. Kept apart so that headless runs never load Swing.
+     */
+    private static class Window {
+        /**
+         * Builds the window on the event dispatch thread, then reports, exits, or asks for the names.
+         */
+        static void show(int size, int winLength, boolean time, boolean exit) {
+            SwingUtilities.invokeLater(() -> {
+                TicTacToeGUI gui = new TicTacToeGUI(size, winLength, "Player X", "Player O");
+                // Paint now, so that the board is on the screen when the time is taken.
+                JRootPane root = gui.getRootPane();
+                root.paintImmediately(0, 0, root.getWidth(), root.getHeight());
+                if (time)
+                    report("Board interactive");
+                if (exit)
+                    System.exit(0);
+                SwingUtilities.invokeLater(gui::askPlayerNames);
+            });
+        }
+        
+        /**
+         * Builds the window the way the game used to start, on the main thread and with the
+         * sounds loaded before the board counts as ready, then reports or exits. The names
+         * the old start asked for first are left at their defaults, since only a person can
+         * enter them.
+         */
+        static void showCold(int size, int winLength, boolean time, boolean exit) {
+            TicTacToeGUI gui = new TicTacToeGUI(size, winLength, "Player X", "Player O");
+            try {
+                gui.getSoundManager().awaitLoaded(0);
+                SwingUtilities.invokeAndWait(() -> {
+                    JRootPane root = gui.getRootPane();
+                    root.paintImmediately(0, 0, root.getWidth(), root.getHeight());
+                });
+            } catch (InterruptedException | InvocationTargetException e) {
+                throw new IllegalStateException("The window could not be shown", e);
+            }
+            if (time)
+                report("Board interactive (cold)");
+            if (exit)
+                System.exit(0);
+        }
+    }
+}
@@ -1,5 +1,11 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import javax.swing.*;
 
 /**
@@ -7,18 +13,34 @@ import javax.swing.*;
  * scoreboard, and status.
  * It interacts with the game model (TicTacToeGame), 
  * Scoreboard, and SoundManager.
+ * The computer thinks on a background thread, and on the player's time too, so
+ * the window keeps painting and responding while it searches.
  * 
  * @author Dumany Lombe
  * @version Student Number: 101316658
  * 
  */
-public class TicTacToeGUI extends JFrame implements ActionListener {
+public class TicTacToeGUI extends JFrame {
+    
+    // Bounds used to scale the board cells to the board size.
+    private static final int MAX_CELL_SIZE = 100;
+    private static final int MIN_CELL_SIZE = 8;
+    private static final int BOARD_PIXELS = 700;
+    
+    // Longest time the computer may think about a move; the 3x3 game is solved long before this.
+    private static final long COMPUTER_THINK_MILLIS = 1000;
+    // Longest time the computer may ponder while the player thinks.
+    private static final long PONDER_MILLIS = 30000;
     
     private TicTacToeGame game;
     private Scoreboard scoreboard;
     private SoundManager soundManager;
+    private AsyncPlayer solver;
+    private AsyncPlayer mcts;
+    // The move the computer is thinking about, or null; a move that arrives for another is dropped.
+    private CompletableFuture<Integer> computerMove;
     
-    private JButton[][] boardButtons;
+    private BoardPanel board;
     private JLabel statusLabel;
     private JLabel scoreLabel;
     
@@ -28,11 +50,26 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     // Tracks which player should start the next game.
     private String startingPlayer;
     
+    // When set, the computer plays O, using Monte Carlo tree search instead of the solver if mctsItem is set.
+    private JCheckBoxMenuItem computerItem;
+    private JCheckBoxMenuItem mctsItem;
+    
+    // When playing online, the connection to the server and the side this player plays.
+    private GameClient client;
+    private String onlineSymbol;
+    
+    // The log of every game played, and the id of the current game in it; null if it could not be opened.
+    // A game is journaled from its first move, so that names entered before it are recorded.
+    private GameJournal journal;
+    private long gameId;
+    private boolean journalPending;
+    private String journalStarter;
+    
     /**
      * Constructs a new GUI for playing Tic Tac Toe, prompting the user for
      * Player X and Player O names, setting the initial player, initializing
      * the game model and related managers (scoreboard, sound), and laying out
-     * the 3x3 button board. This constructor also creates a menu bar with
+     * the 3x3 board. This constructor also creates a menu bar with
      * "New" and "Quit" options, and sets up the primary labels for score
      * tracking and status (i.e., whose turn it is).
      * 
@@ -40,57 +77,89 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
      * 
      */
     public TicTacToeGUI() {
+        this(TicTacToeGame.DEFAULT_SIZE, TicTacToeGame.DEFAULT_SIZE);
+    }
+    
+    /**
+     * Constructs a new GUI for a size x size board where winLength marks in a row win.
+     * The cells are scaled down so that large boards still fit on the screen.
+     * 
+     * @param size the number of rows and columns on the board
+     * @param winLength the number of marks in a row needed to win
+     */
+    public TicTacToeGUI(int size, int winLength) {
+        this(size, winLength, askName(null, "Enter name for Player X:", "Player X"),
+             askName(null, "Enter name for Player O:", "Player O"));
+    }
+    
+    /**
+     * Constructs a new GUI for a size x size board with the given player names, without
+     * prompting for them, so that the board appears as soon as it is laid out.
+     */
+    public TicTacToeGUI(int size, int winLength, String playerXName, String playerOName) {
         super("Tic Tac Toe");
-        
-        // Get player names.
-        playerXName = JOptionPane.showInputDialog(this, "Enter name for Player X:");
-        if (playerXName == null || playerXName.trim().isEmpty())
-            playerXName = "Player X";
-        playerOName = JOptionPane.showInputDialog(this, "Enter name for Player O:");
-        if (playerOName == null || playerOName.trim().isEmpty())
-            playerOName = "Player O";
+        this.playerXName = playerXName;
+        this.playerOName = playerOName;
         
         // Set the default starting player.
         startingPlayer = TicTacToeGame.PLAYER_X;
         
         // Initialize game model, scoreboard, and sound manager.
-        game = new TicTacToeGame(startingPlayer);
+        game = new TicTacToeGame(size, winLength, startingPlayer);
         scoreboard = new Scoreboard();
         soundManager = new SoundManager();
         
+        // Create the status label.
+        statusLabel = new JLabel("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+        statusLabel.setHorizontalAlignment(JLabel.CENTER);
+        openJournal();
+        
         // Create the scoreboard label.
         scoreLabel = new JLabel();
         scoreLabel.setHorizontalAlignment(JLabel.CENTER);
         updateScoreboard();
         
-        // Create the status label.
-        statusLabel = new JLabel("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
-        statusLabel.setHorizontalAlignment(JLabel.CENTER);
-        
-        // Create the board panel with a 3x3 grid of buttons.
-        JPanel boardPanel = new JPanel(new GridLayout(3, 3));
-        boardButtons = new JButton[3][3];
-        for (int i = 0; i < 3; i++){
-            for (int j = 0; j < 3; j++){
-                boardButtons[i][j] = new JButton(TicTacToeGame.EMPTY);
-                boardButtons[i][j].setFont(new Font("Arial", Font.BOLD, 60));
-                boardButtons[i][j].setPreferredSize(new Dimension(100, 100));
-                boardButtons[i][j].addActionListener(this);
-                boardPanel.add(boardButtons[i][j]);
-            }
-        }
+        // Create the board, a single component that paints its size x size cells.
+        int cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, BOARD_PIXELS / size));
+        board = new BoardPanel(size, cellSize, (row, col) -> timed("cellClicked", () -> cellClicked(row, col)));
         
         // Set up the menu bar with "New" and "Quit" options.
         JMenuBar menuBar = new JMenuBar();
         JMenu gameMenu = new JMenu("Game");
         
         JMenuItem newItem = new JMenuItem("New");
-        newItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
-        newItem.addActionListener(e -> resetGame());
+        newItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        newItem.addActionListener(e -> timed("newGame", this::resetGame));
         gameMenu.add(newItem);
         
+        computerItem = new JCheckBoxMenuItem("Play Against Computer");
+        computerItem.addActionListener(e -> timed("playAgainstComputer", this::computerChanged));
+        gameMenu.add(computerItem);
+        
+        mctsItem = new JCheckBoxMenuItem("Computer Uses Monte Carlo Search");
+        mctsItem.addActionListener(e -> timed("useMonteCarlo", this::computerChanged));
+        gameMenu.add(mctsItem);
+        
+        JMenuItem namesItem = new JMenuItem("Player Names...");
+        namesItem.addActionListener(e -> askPlayerNames());
+        gameMenu.add(namesItem);
+        
+        JMenuItem onlineItem = new JMenuItem("Play Online...");
+        onlineItem.addActionListener(e -> connectOnline());
+        gameMenu.add(onlineItem);
+        
+        JMenuItem undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        undoItem.addActionListener(e -> timed("undo", this::undoMove));
+        gameMenu.add(undoItem);
+        
+        JMenuItem redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        redoItem.addActionListener(e -> timed("redo", this::redoMove));
+        gameMenu.add(redoItem);
+        
         JMenuItem quitItem = new JMenuItem("Quit");
-        quitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+        quitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
         quitItem.addActionListener(e -> System.exit(0));
         gameMenu.add(quitItem);
         
@@ -100,7 +169,7 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
         // Layout the frame.
         setLayout(new BorderLayout());
         add(scoreLabel, BorderLayout.NORTH);
-        add(boardPanel, BorderLayout.CENTER);
+        add(board, BorderLayout.CENTER);
         add(statusLabel, BorderLayout.SOUTH);
         
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -108,6 +177,94 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
         setResizable(true);
         setLocationRelativeTo(null);
         setVisible(true);
+        journalStart();
+        Metrics.export();
+    }
+    
+    /**
+     * Opens the game journal, rebuilding the scoreboard from the games already in it, and
+     * makes sure it is closed when the program exits. Without a journal the games are not
+     * saved, which the status line says.
+     */
+    private void openJournal() {
+        try {
+            GameJournal opened = new GameJournal(Paths.get(GameJournal.DEFAULT_FILE),
+                                                 GameJournal.scoreKeeper(scoreboard));
+            journal = opened;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    System.err.println("Could not save the game journal: " + e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            System.err.println("Games will not be saved: " + e.getMessage());
+            statusLabel.setText("Games will not be saved: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Appends to the journal, if there is one. If it could not be written, journaling stops
+     * and the players are told that their games are no longer saved.
+     */
+    private void appendToJournal(Consumer<GameJournal> append) {
+        if (journal == null)
+            return;
+        try {
+            append.accept(journal);
+        } catch (UncheckedIOException e) {
+            GameJournal failed = journal;
+            journal = null;
+            journalPending = false;
+            try {
+                failed.close();
+            } catch (IOException ignored) {
+                // The same failure, reported below.
+            }
+            String message = "Games are no longer saved: " + e.getCause().getMessage();
+            System.err.println(message);
+            JOptionPane.showMessageDialog(this, message, "Game Journal", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
+    /**
+     * Marks the current game, which has no moves yet, to be recorded in the journal when
+     * its first move is made.
+     */
+    private void journalStart() {
+        journalPending = journal != null;
+        journalStarter = game.getCurrentPlayer();
+    }
+    
+    /**
+     * Records the start of the current game in the journal, if it has not been yet.
+     */
+    private void journalPendingStart() {
+        if (!journalPending)
+            return;
+        journalPending = false;
+        gameId = journal.startGame(game.getSize(), game.getWinLength(), journalStarter, playerXName, playerOName);
+    }
+    
+    /**
+     * Asks for the names of both players, keeping the current ones when nothing is entered.
+     * A game already under way keeps the old names in the journal.
+     */
+    public void askPlayerNames() {
+        playerXName = askName(this, "Enter name for Player X:", playerXName);
+        playerOName = askName(this, "Enter name for Player O:", playerOName);
+        updateScoreboard();
+        if (board.isEnabled() && client == null)
+            statusLabel.setText("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+    }
+    
+    /**
+     * Prompts for a player name, returning the given default if nothing is entered.
+     */
+    private static String askName(Component parent, String prompt, String defaultName) {
+        String name = JOptionPane.showInputDialog(parent, prompt, defaultName);
+        return name == null || name.trim().isEmpty() ? defaultName : name.trim();
     }
     
     /**
@@ -122,6 +279,13 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
             return "";
     }
     
+    /**
+     * Returns the sound manager, whose sounds may still be loading.
+     */
+    SoundManager getSoundManager() {
+        return soundManager;
+    }
+    
     /**
      * Updates the scoreboard label.
      */
@@ -130,71 +294,183 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     }
     
     /**
-     * Handles the button click events on the Tic-Tac-Toe board. If the game is still in progress,
-     * identifies the clicked button, plays a click sound, and attempts to make a move in the
-     * underlying game model. If a winning or tie condition is detected, it updates the status label,
+     * Handles clicks on the cells of the Tic-Tac-Toe board. If the game is still in progress,
+     * plays a click sound and attempts to make a move in the underlying game model at the
+     * clicked cell. If a winning or tie condition is detected, it updates the status label,
      * records the result in the scoreboard, highlights the winning combination (if any), and disables
      * further moves. If the game continues, it switches to the next player and updates the status
-     * accordingly.
+     * accordingly. When playing against the computer, the computer is asked for its reply, and
+     * clicks are ignored until it has made it.
      *
-     * @param e the ActionEvent triggered when the user clicks one of the board buttons
-     */
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        // If the game is over, ignore moves.
-        if (game.isGameOver()) return;
-        
-        JButton clicked = (JButton) e.getSource();
-        int row = -1, col = -1;
-        // Find the position of the clicked button.
-        for (int i = 0; i < 3; i++){
-            for (int j = 0; j < 3; j++){
-                if (boardButtons[i][j] == clicked) {
-                    row = i;
-                    col = j;
-                    break;
+     * @param row the row of the clicked cell
+     * @param col the column of the clicked cell
+     */
+    private void cellClicked(int row, int col) {
+        // If the game is over, or the computer is thinking, ignore moves.
+        if (game.isGameOver() || isComputerTurn()) return;
+        
+        // Ignore the click if the cell is already marked.
+        if (!game.isEmpty(row, col))
+            return;
+        
+        // Online, the move is sent to the server and played when it comes back.
+        if (client != null) {
+            if (game.getCurrentPlayer().equals(onlineSymbol))
+                sendOnlineMove(row, col);
+            return;
+        }
+        
+        playMove(row, col);
+        
+        // Let the computer answer.
+        if (!game.isGameOver() && isComputerTurn())
+            computerMove();
+    }
+    
+    /**
+     * Returns whether the computer is playing and it is its turn.
+     */
+    private boolean isComputerTurn() {
+        return client == null && computerItem.isSelected() && game.getCurrentPlayer().equals(TicTacToeGame.PLAYER_O);
+    }
+    
+    /**
+     * Asks the computer for a move for the current player, to be played when it arrives.
+     * The search runs in the background; its result is applied in one event on the EDT,
+     * unless the move has been cancelled by then, and the computer then ponders on the
+     * player's time.
+     */
+    private void computerMove() {
+        cancelComputerMove();
+        MoveProvider computer = computer();
+        statusLabel.setText(getPlayerName(game.getCurrentPlayer()) + " is thinking...");
+        CompletableFuture<Integer> request = computer.requestMove(game);
+        computerMove = request;
+        request.whenComplete((move, failure) -> {
+            if (failure instanceof CancellationException)
+                return;
+            SwingUtilities.invokeLater(() -> timed("computerMove", () -> {
+                if (computerMove != request)
+                    return;
+                computerMove = null;
+                if (failure == null && move >= 0) {
+                    playMove(move / game.getSize(), move % game.getSize());
+                    ponder();
+                } else {
+                    statusLabel.setText("The computer could not move. It's "
+                                        + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
                 }
+            }));
+        });
+    }
+    
+    /**
+     * Lets the computer think about the game while it is the player's turn.
+     */
+    private void ponder() {
+        if (client == null && computerItem.isSelected() && !game.isGameOver() && !isComputerTurn())
+            computer().ponder(game, PONDER_MILLIS);
+    }
+    
+    /**
+     * Stops the computer's search or pondering, dropping any move it was about to make.
+     */
+    private void cancelComputerMove() {
+        computerMove = null;
+        if (solver != null)
+            solver.cancel();
+        if (mcts != null)
+            mcts.cancel();
+    }
+    
+    /**
+     * Returns the solver, or the Monte Carlo player on all cores but one, which is left
+     * for painting the board; each is created on first use.
+     */
+    private MoveProvider computer() {
+        if (mctsItem.isSelected()) {
+            if (mcts == null) {
+                int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+                mcts = new AsyncPlayer(new MctsPlayer(COMPUTER_THINK_MILLIS, 0, threads));
             }
-            if (row != -1) break;
+            return mcts;
         }
-        
-        // Ignore the click if the button is already marked.
-        if (!clicked.getText().equals(TicTacToeGame.EMPTY))
+        if (solver == null) {
+            EvaluationCache table = new EvaluationCache(Solver.DEFAULT_TABLE_BITS);
+            Metrics.registerCache("solver", table);
+            solver = new AsyncPlayer(new SolverPlayer(COMPUTER_THINK_MILLIS, table));
+        }
+        return solver;
+    }
+    
+    /**
+     * Starts or stops the computer, or switches its search, after a menu choice.
+     */
+    private void computerChanged() {
+        cancelComputerMove();
+        if (client != null || !board.isEnabled())
             return;
-        
+        statusLabel.setText("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+        if (isComputerTurn())
+            computerMove();
+        else
+            ponder();
+    }
+    
+    /**
+     * Plays the current player's move at the given cell and updates the board, status,
+     * and scoreboard.
+     */
+    private void playMove(int row, int col) {
+        long start = System.nanoTime();
         // Play the click sound.
         soundManager.playClick();
         
         // Make the move in the game model.
         if (game.makeMove(row, col)) {
-            // Update the GUI button.
-            boardButtons[row][col].setText(game.getCell(row, col));
+            if (Metrics.ENABLED)
+                Metrics.moveMade();
+            moveMade(row, col);
+            Metrics.moveHandled(start, game.getSize());
         }
+    }
+    
+    /**
+     * Shows and journals a move just made in the game model. If the game is over, the
+     * result is recorded and the board disabled; otherwise the turn passes to the other player.
+     */
+    private void moveMade(int row, int col) {
+        // Update the board cell.
+        board.setMark(row, col, game.getCell(row, col));
+        appendToJournal(log -> {
+            journalPendingStart();
+            log.move(gameId, row, col);
+        });
         
         // Check for game over.
         if (game.isGameOver()) {
             String win = game.getWinner();
+            if (Metrics.ENABLED)
+                Metrics.gameCompleted();
+            appendToJournal(log -> log.gameOver(gameId, win));
             if (win.equals(TicTacToeGame.TIE)) {
                 statusLabel.setText("Game Over: It's a tie!");
-                scoreboard.recordDraw();
+                scoreboard.recordGame(playerXName, playerOName, TicTacToeGame.TIE);
                 // Toggle the starting player in case of a tie.
-                startingPlayer = startingPlayer.equals(TicTacToeGame.PLAYER_X) ? TicTacToeGame.PLAYER_O : TicTacToeGame.PLAYER_X;
+                startingPlayer = TicTacToeGame.nextStartingPlayer(startingPlayer, win);
             } else {
                 statusLabel.setText("Game Over: " + getPlayerName(win) + " wins!");
-                scoreboard.recordWin(win);
+                scoreboard.recordGame(playerXName, playerOName, win);
                 // Highlight winning combination.
                 int[][] combo = game.getWinningCombination();
-                if (combo != null) {
-                    for (int[] pos : combo) {
-                        boardButtons[pos[0]][pos[1]].setBackground(Color.GREEN);
-                    }
-                }
+                if (combo != null)
+                    board.highlight(combo);
                 // The winner starts the next game.
-                startingPlayer = win;
+                startingPlayer = TicTacToeGame.nextStartingPlayer(startingPlayer, win);
                 soundManager.playCelebration();
             }
             updateScoreboard();
-            disableAllButtons();
+            disableBoard();
         } else {
             // Switch player and update status.
             game.switchPlayer();
@@ -203,28 +479,182 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     }
     
     /**
-     * Disables all board buttons.
+     * Takes back the last move, or against the computer the last moves back to the human
+     * player's turn. Finished games, whose result is already recorded, online games and
+     * games left when the connection dropped cannot be undone.
      */
-    private void disableAllButtons() {
-        for (int i = 0; i < 3; i++){
-            for (int j = 0; j < 3; j++){
-                boardButtons[i][j].setEnabled(false);
-            }
-        }
+    private void undoMove() {
+        if (client != null || !board.isEnabled())
+            return;
+        cancelComputerMove();
+        int size = game.getSize();
+        do {
+            int cell = game.undo();
+            if (cell < 0)
+                break;
+            board.setMark(cell / size, cell % size, TicTacToeGame.EMPTY);
+            appendToJournal(log -> log.undo(gameId));
+        } while (isComputerTurn());
+        statusLabel.setText("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+        // Only when the computer made the first move of the game.
+        if (isComputerTurn())
+            computerMove();
+        else
+            ponder();
     }
     
     /**
-     * Resets the game board for a new round.
+     * Plays the last undone move again, or against the computer the undone moves up to the
+     * human player's next turn.
+     */
+    private void redoMove() {
+        if (client != null || !board.isEnabled())
+            return;
+        cancelComputerMove();
+        int size = game.getSize();
+        do {
+            int cell = game.redo();
+            if (cell < 0)
+                break;
+            soundManager.playClick();
+            moveMade(cell / size, cell % size);
+        } while (!game.isGameOver() && isComputerTurn());
+        // With nothing left to redo, the computer thinks of its own move.
+        if (!game.isGameOver() && isComputerTurn())
+            computerMove();
+        else
+            ponder();
+    }
+    
+    /**
+     * Runs a GUI event handler, recording how long it held the event dispatch thread.
+     */
+    private static void timed(String handler, Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        Metrics.edtHandled(handler, start);
+    }
+    
+    /**
+     * Disables the board, which also stops undo and redo until the next game.
+     */
+    private void disableBoard() {
+        board.setEnabled(false);
+    }
+    
+    /**
+     * Resets the game board for a new round, stopping the computer if it is thinking.
+     * Online, this asks the server for a new match.
      */
     private void resetGame() {
-        game.initializeGame(startingPlayer);
-        for (int i = 0; i < 3; i++){
-            for (int j = 0; j < 3; j++){
-                boardButtons[i][j].setText(TicTacToeGame.EMPTY);
-                boardButtons[i][j].setEnabled(true);
-                boardButtons[i][j].setBackground(null); // Reset background color
+        cancelComputerMove();
+        if (client != null) {
+            try {
+                client.play(game.getSize(), game.getWinLength());
+            } catch (IOException ex) {
+                statusLabel.setText("Connection lost: " + ex.getMessage());
             }
+            return;
         }
+        game.initializeGame(startingPlayer);
+        journalStart();
+        clearBoard();
         statusLabel.setText("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+        if (isComputerTurn())
+            computerMove();
+        else
+            ponder();
+    }
+    
+    /**
+     * Clears and enables the board.
+     */
+    private void clearBoard() {
+        board.clear();
+        board.setEnabled(true);
+    }
+    
+    /**
+     * Asks for a server address, connects to it as Player X's name, and asks for a match
+     * on this board. Moves, results and errors from the server are shown on the EDT.
+     */
+    private void connectOnline() {
+        String address = JOptionPane.showInputDialog(this, "Server (host:port):", "localhost:" + GameServer.DEFAULT_PORT);
+        if (address == null || address.trim().isEmpty())
+            return;
+        cancelComputerMove();
+        String host = address.trim();
+        int port = GameServer.DEFAULT_PORT;
+        int colon = host.lastIndexOf(':');
+        try {
+            if (colon >= 0) {
+                port = Integer.parseInt(host.substring(colon + 1));
+                host = host.substring(0, colon);
+            }
+            if (client != null)
+                client.close();
+            String myName = playerXName;
+            client = new GameClient(host, port, myName, new GameClient.Listener() {
+                public void waiting() {
+                    SwingUtilities.invokeLater(() -> statusLabel.setText("Waiting for an opponent..."));
+                }
+                
+                public void started(int size, int winLength, String symbol, String opponentName, String starter) {
+                    SwingUtilities.invokeLater(() -> {
+                        onlineSymbol = symbol;
+                        playerXName = symbol.equals(TicTacToeGame.PLAYER_X) ? myName : opponentName;
+                        playerOName = symbol.equals(TicTacToeGame.PLAYER_O) ? myName : opponentName;
+                        updateScoreboard();
+                        game.initializeGame(starter);
+                        journalStart();
+                        clearBoard();
+                        statusLabel.setText("It's " + getPlayerName(game.getCurrentPlayer()) + "'s turn.");
+                    });
+                }
+                
+                public void moved(String symbol, int row, int col) {
+                    SwingUtilities.invokeLater(() -> timed("onlineMove", () -> playMove(row, col)));
+                }
+                
+                public void gameOver(String winner) {
+                    // The local game reaches the same result from the moves.
+                }
+                
+                public void opponentLeft() {
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("Your opponent left. Choose New for another match.");
+                        disableBoard();
+                    });
+                }
+                
+                public void error(String message) {
+                    SwingUtilities.invokeLater(() -> statusLabel.setText("Server: " + message));
+                }
+                
+                public void disconnected() {
+                    SwingUtilities.invokeLater(() -> {
+                        // Playing on alone would record a game the opponent never finished.
+                        client = null;
+                        statusLabel.setText("Disconnected from the server. Choose New for a game here.");
+                        disableBoard();
+                    });
+                }
+            });
+            client.play(game.getSize(), game.getWinLength());
+        } catch (IOException | NumberFormatException ex) {
+            client = null;
+            JOptionPane.showMessageDialog(this, "Could not connect to " + address + ": " + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Sends the local player's move to the server.
+     */
+    private void sendOnlineMove(int row, int col) {
+        try {
+            client.move(row, col);
+        } catch (IOException ex) {
+            statusLabel.setText("Connection lost: " + ex.getMessage());
+        }
     }
 }
@@ -2,6 +2,26 @@
  * This class models the tic-tac-toe game logic.
  * It maintains the board, current player, and win-checking logic.
  * 
+ * The board has a configurable size and win length, so the same class plays
+ * classic 3x3 tic-tac-toe as well as gomoku-style variants such as 15x15 with
+ * five in a row. It is stored as one bitset per player, where cell (row, col)
+ * is bit row * size + col. Win detection counts outward from the last move,
+ * so each move costs O(winLength) and never allocates.
+ * 
+ * Every move is kept on a history stack, so moves can be taken back with undo
+ * and played again with redo in constant time, without copying the board.
+ * 
+ * The position's Zobrist hashes under all eight symmetries of the board are
+ * updated with each move and undo, so getPositionKey returns its canonical key,
+ * the same for every position equivalent by symmetry, without scanning the board.
+ * 
+ * A game is meant for one thread. Positions of boards up to 7x7 can be shared
+ * with other threads as BoardSnapshots.
+ * 
+ * The board and the moves are kept in arrays that a game may share with others:
+ * a GamePool packs the games it lends into a few large arrays instead of small
+ * ones per game.
+ * 
  * @author Dumany Lombe
  * @version Student Number: 101316658
  * 
@@ -12,17 +32,78 @@ public class TicTacToeGame {
     public static final String EMPTY = " ";
     public static final String TIE = "T";
     
-    private String[][] board;
-    private String currentPlayer;
+    public static final int DEFAULT_SIZE = 3;
+    public static final int MAX_SIZE = 100;
+    
+    // Row and column steps for the four line directions: horizontal, vertical, and both diagonals.
+    private static final int[] DIR_ROW = {0, 1, 1, 1};
+    private static final int[] DIR_COL = {1, 0, 1, -1};
+    
+    private final int size;
+    private final int winLength;
+    // X's words of the board at xBase in board, and O's at oBase.
+    private final long[] board;
+    private final int xBase;
+    private final int oBase;
+    private final int words;
+    private boolean xToMove;
     private String winner;
     private int numFreeSquares;
+    // Coordinates of the completed line; only valid when hasWinningCombination is set.
+    private final int[][] winningCombination;
+    private boolean hasWinningCombination;
+    // Moves played so far from movesBase, as cell index << 1 | 1 if X moved; entries from
+    // moveCount up to redoLimit are moves that were undone and can be redone.
+    private final int[] moves;
+    private final int movesBase;
+    private int moveCount;
+    private int redoLimit;
+    private final PositionKeys keys;
+    private final long[] hashes = new long[PositionKeys.SYMMETRIES];
+    // The game's place in the GamePool that lent it, or -1.
+    final int poolSlot;
     
     /**
-     * Constructs a new game with the specified starting player.
+     * Constructs a new classic 3x3 game with the specified starting player.
      * @param startingPlayer either PLAYER_X or PLAYER_O.
      */
     public TicTacToeGame(String startingPlayer) {
-        board = new String[3][3];
+        this(DEFAULT_SIZE, DEFAULT_SIZE, startingPlayer);
+    }
+    
+    /**
+     * Constructs a new game on a size x size board where winLength marks in a row,
+     * column or diagonal win.
+     * @param size the number of rows and columns (1-100)
+     * @param winLength the number of marks in a row needed to win (1-size)
+     * @param startingPlayer either PLAYER_X or PLAYER_O.
+     */
+    public TicTacToeGame(int size, int winLength, String startingPlayer) {
+        this(size, winLength, startingPlayer, null, 0, null, 0, -1);
+    }
+    
+    /**
+     * Constructs a game whose board is the 2 * words(size) longs of board from
+     * boardBase, X's then O's, and whose moves are the size * size ints of moves from
+     * movesBase; with null arrays, the game has its own. Used by GamePool.
+     */
+    TicTacToeGame(int size, int winLength, String startingPlayer, long[] board, int boardBase, int[] moves,
+                  int movesBase, int poolSlot) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE + ": " + size);
+        if (winLength < 1 || winLength > size)
+            throw new IllegalArgumentException("Win length must be between 1 and " + size + ": " + winLength);
+        this.size = size;
+        this.winLength = winLength;
+        words = words(size);
+        this.board = board != null ? board : new long[2 * words];
+        xBase = board != null ? boardBase : 0;
+        oBase = xBase + words;
+        this.moves = moves != null ? moves : new int[size * size];
+        this.movesBase = moves != null ? movesBase : 0;
+        this.poolSlot = poolSlot;
+        winningCombination = new int[winLength][2];
+        keys = PositionKeys.of(size, winLength);
         initializeGame(startingPlayer);
     }
     
@@ -31,42 +112,184 @@ public class TicTacToeGame {
      * @param startingPlayer the player who should start.
      */
     public void initializeGame(String startingPlayer) {
-        for (int i = 0; i < 3; i++){
-            for (int j = 0; j < 3; j++){
-                board[i][j] = EMPTY;
-            }
-        }
-        currentPlayer = startingPlayer;
+        for (int i = xBase; i < oBase + words; i++)
+            board[i] = 0L;
+        xToMove = PLAYER_X.equals(startingPlayer);
         winner = EMPTY;
-        numFreeSquares = 9;
+        numFreeSquares = size * size;
+        hasWinningCombination = false;
+        moveCount = 0;
+        redoLimit = 0;
+        for (int s = 0; s < hashes.length; s++)
+            hashes[s] = 0L;
     }
     
     /**
      * Attempts to make a move at the given row and column.
-     * @param row the row index (0-2)
-     * @param col the column index (0-2)
+     * @param row the row index (0 to size - 1)
+     * @param col the column index (0 to size - 1)
      * @return true if the move was made, false if the cell was not empty.
+     * @throws IndexOutOfBoundsException if the cell is off the board; the game is not changed.
      */
     public boolean makeMove(int row, int col) {
-        if (board[row][col].equals(EMPTY)) {
-            board[row][col] = currentPlayer;
-            numFreeSquares--;
-            // Check if this move wins the game
-            if (checkWinner(row, col)) {
-                winner = currentPlayer;
-            } else if (numFreeSquares == 0) {
-                winner = TIE;
-            }
-            return true;
+        int index = cellIndex(row, col);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if (((board[xBase + word] | board[oBase + word]) & bit) != 0)
+            return false;
+        board[(xToMove ? xBase : oBase) + word] |= bit;
+        numFreeSquares--;
+        keys.toggle(hashes, index, xToMove);
+        moves[movesBase + moveCount++] = index << 1 | (xToMove ? 1 : 0);
+        redoLimit = moveCount;
+        // Check if this move wins the game
+        if (checkWinner(row, col)) {
+            winner = getCurrentPlayer();
+        } else if (numFreeSquares == 0) {
+            winner = TIE;
         }
-        return false;
+        return true;
+    }
+    
+    /**
+     * Takes back the last move. The board, the winner and the number of free squares are
+     * restored to what they were before it, and the player who made it is to move again.
+     * Runs in constant time, so a search can make and unmake moves instead of copying
+     * the board. Moves must not be made after the game is over.
+     * @return the cell index (row * size + col) of the move, or -1 if no move has been made.
+     */
+    public int undo() {
+        if (moveCount == 0)
+            return -1;
+        int entry = moves[movesBase + --moveCount];
+        int index = entry >>> 1;
+        xToMove = (entry & 1) != 0;
+        board[(xToMove ? xBase : oBase) + (index >>> 6)] &= ~(1L << index);
+        keys.toggle(hashes, index, xToMove);
+        numFreeSquares++;
+        winner = EMPTY;
+        hasWinningCombination = false;
+        return index;
+    }
+    
+    /**
+     * Plays the last undone move again, by the player who made it. As with makeMove, that
+     * player remains the current player. Making any other move discards the moves that
+     * could be redone.
+     * @return the cell index (row * size + col) of the move, or -1 if there is none to redo.
+     */
+    public int redo() {
+        if (moveCount == redoLimit)
+            return -1;
+        int entry = moves[movesBase + moveCount];
+        int index = entry >>> 1;
+        int limit = redoLimit;
+        xToMove = (entry & 1) != 0;
+        makeMove(index / size, index % size);
+        redoLimit = limit;
+        return index;
+    }
+    
+    /**
+     * Returns whether there is a move to undo.
+     */
+    public boolean canUndo() {
+        return moveCount > 0;
+    }
+    
+    /**
+     * Returns whether there is an undone move to redo.
+     */
+    public boolean canRedo() {
+        return moveCount < redoLimit;
+    }
+    
+    /**
+     * Returns the number of moves played in this game.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+    
+    /**
+     * Returns the cell index (row * size + col) of the given move, counting from 0.
+     */
+    public int getMove(int i) {
+        if (i < 0 || i >= moveCount)
+            throw new IndexOutOfBoundsException("Move " + i + " of " + moveCount);
+        return moves[movesBase + i] >>> 1;
+    }
+    
+    /**
+     * Returns the canonical key of the position and the player to move. Positions that
+     * are rotations or reflections of each other have the same key, which is also the
+     * key a Solver uses for them.
+     */
+    public long getPositionKey() {
+        return keys.canonicalKey(hashes, xToMove);
+    }
+    
+    /**
+     * Returns the symmetry under which the position has its canonical key, so that
+     * moves can be stored as seen in that orientation with PositionKeys.map.
+     */
+    public int getCanonicalSymmetry() {
+        return PositionKeys.canonicalSymmetry(hashes);
+    }
+    
+    /**
+     * Returns an immutable copy of the position that other threads may read, in
+     * constant time.
+     * @throws IllegalStateException if the board is larger than BoardSnapshot.MAX_SIZE.
+     */
+    public BoardSnapshot snapshot() {
+        return BoardSnapshot.of(size, winLength, board[xBase], board[oBase], xToMove, winner);
     }
     
     /**
      * Returns the value at the given cell.
+     * @throws IndexOutOfBoundsException if the cell is off the board.
      */
     public String getCell(int row, int col) {
-        return board[row][col];
+        int index = cellIndex(row, col);
+        if (isSet(board, xBase, index))
+            return PLAYER_X;
+        if (isSet(board, oBase, index))
+            return PLAYER_O;
+        return EMPTY;
+    }
+    
+    /**
+     * Returns whether the given cell is empty.
+     * @throws IndexOutOfBoundsException if the cell is off the board.
+     */
+    public boolean isEmpty(int row, int col) {
+        int index = cellIndex(row, col);
+        return ((board[xBase + (index >>> 6)] | board[oBase + (index >>> 6)]) & (1L << index)) == 0;
+    }
+    
+    /**
+     * Returns the cell index of (row, col). A row or column past the edge would otherwise
+     * wrap to another cell, or to a bit past the board.
+     */
+    private int cellIndex(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size)
+            throw new IndexOutOfBoundsException("Cell " + row + "," + col + " is off the " + size + "x" + size + " board");
+        return row * size + col;
+    }
+    
+    /**
+     * Returns the number of rows (and columns) on the board.
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of marks in a row needed to win.
+     */
+    public int getWinLength() {
+        return winLength;
     }
     
     /**
@@ -80,7 +303,7 @@ public class TicTacToeGame {
      * Checks if the game is over.
      */
     public boolean isGameOver() {
-        return !winner.equals(EMPTY);
+        return winner != EMPTY;
     }
     
     /**
@@ -94,89 +317,112 @@ public class TicTacToeGame {
      * Returns the current player.
      */
     public String getCurrentPlayer() {
-        return currentPlayer;
+        return xToMove ? PLAYER_X : PLAYER_O;
     }
     
     /**
      * Switches the current player.
      */
     public void switchPlayer() {
-        currentPlayer = currentPlayer.equals(PLAYER_X) ? PLAYER_O : PLAYER_X;
+        xToMove = !xToMove;
+    }
+    
+    /**
+     * Returns who starts the game after one that startingPlayer started and winner
+     * won: the winner starts the next game, and a tie hands the start to the other player.
+     * @param winner "X", "O", or "T" for tie
+     */
+    public static String nextStartingPlayer(String startingPlayer, String winner) {
+        if (!winner.equals(TIE))
+            return winner;
+        return startingPlayer.equals(PLAYER_X) ? PLAYER_O : PLAYER_X;
     }
     
     /**
      * Checks whether the most recent move by the current player (at the specified row and column)
-     * has produced a winning combination on the board. This method verifies the row, the column,
-     * and (if applicable) both diagonals for three identical symbols (i.e., the current player's
-     * marker).
+     * has produced a winning combination on the board. For each of the four line directions this
+     * counts the current player's marks outward from the move in both senses, stopping after
+     * winLength - 1 steps, so the cost does not depend on the board size. The completed line, if
+     * any, is copied into winningCombination.
      *
      * @param row the row index of the last move
      * @param col the column index of the last move
      * @return true if the current player's move completes a winning line, false otherwise
      */
     private boolean checkWinner(int row, int col) {
-        String player = currentPlayer;
-        // Check row
-        if (board[row][0].equals(player) &&
-            board[row][1].equals(player) &&
-            board[row][2].equals(player))
-            return true;
-        // Check column
-        if (board[0][col].equals(player) &&
-            board[1][col].equals(player) &&
-            board[2][col].equals(player))
-            return true;
-        // Check main diagonal
-        if (row == col) {
-            if (board[0][0].equals(player) &&
-                board[1][1].equals(player) &&
-                board[2][2].equals(player))
+        int base = xToMove ? xBase : oBase;
+        for (int d = 0; d < DIR_ROW.length; d++) {
+            int forward = countRun(base, row, col, DIR_ROW[d], DIR_COL[d]);
+            int backward = countRun(base, row, col, -DIR_ROW[d], -DIR_COL[d]);
+            if (1 + forward + backward >= winLength) {
+                // Record the first winLength cells of the run, starting from its far end.
+                int r = row - backward * DIR_ROW[d];
+                int c = col - backward * DIR_COL[d];
+                for (int i = 0; i < winLength; i++) {
+                    winningCombination[i][0] = r + i * DIR_ROW[d];
+                    winningCombination[i][1] = c + i * DIR_COL[d];
+                }
+                hasWinningCombination = true;
                 return true;
+            }
         }
-        // Check anti-diagonal
-        if (row + col == 2) {
-            if (board[0][2].equals(player) &&
-                board[1][1].equals(player) &&
-                board[2][0].equals(player))
+        return false;
+    }
+    
+    /**
+     * Returns whether the given player placing a mark on the empty cell (row, col) would
+     * complete a winning line. The board is not changed.
+     */
+    public boolean isWinningMove(int row, int col, String player) {
+        int base = player.equals(PLAYER_X) ? xBase : oBase;
+        for (int d = 0; d < DIR_ROW.length; d++) {
+            int count = 1 + countRun(base, row, col, DIR_ROW[d], DIR_COL[d])
+                          + countRun(base, row, col, -DIR_ROW[d], -DIR_COL[d]);
+            if (count >= winLength)
                 return true;
         }
         return false;
     }
     
     /**
-     * If there is a winning combination, returns an array of coordinate pairs.
-     * Otherwise, returns null.
+     * Counts consecutive marks of the player whose words start at base, starting next to
+     * (row, col) in the given direction, up to winLength - 1.
      */
-    public int[][] getWinningCombination() {
-        String player = currentPlayer;
-        // Check rows
-        for (int i = 0; i < 3; i++) {
-            if (board[i][0].equals(player) &&
-                board[i][1].equals(player) &&
-                board[i][2].equals(player)) {
-                return new int[][] { {i, 0}, {i, 1}, {i, 2} };
-            }
-        }
-        // Check columns
-        for (int j = 0; j < 3; j++) {
-            if (board[0][j].equals(player) &&
-                board[1][j].equals(player) &&
-                board[2][j].equals(player)) {
-                return new int[][] { {0, j}, {1, j}, {2, j} };
-            }
+    private int countRun(int base, int row, int col, int dRow, int dCol) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size
+               && isSet(board, base, r * size + c)) {
+            count++;
+            r += dRow;
+            c += dCol;
         }
-        // Check main diagonal
-        if (board[0][0].equals(player) &&
-            board[1][1].equals(player) &&
-            board[2][2].equals(player)) {
-            return new int[][] { {0, 0}, {1, 1}, {2, 2} };
-        }
-        // Check anti-diagonal
-        if (board[0][2].equals(player) &&
-            board[1][1].equals(player) &&
-            board[2][0].equals(player)) {
-            return new int[][] { {0, 2}, {1, 1}, {2, 0} };
-        }
-        return null;
+        return count;
+    }
+    
+    /**
+     * Returns whether the bit for the given cell index is set in the words from base.
+     */
+    private static boolean isSet(long[] bits, int base, int index) {
+        return (bits[base + (index >>> 6)] & (1L << index)) != 0;
+    }
+    
+    /**
+     * Returns the number of longs that hold one player's marks on a size x size board.
+     */
+    static int words(int size) {
+        return (size * size + 63) >>> 6;
+    }
+    
+    /**
+     * If there is a winning combination, returns an array of winLength coordinate pairs.
+     * Otherwise, returns null. The returned array is reused by this game and must not be
+     * modified.
+     */
+    public int[][] getWinningCombination() {
+        if (!hasWinningCombination)
+            return null;
+        return winningCombination;
     }
 }
@@ -0,0 +1,261 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * This class plays a tournament between named players without a GUI and ranks
+ * them on a RatedScoreboard.
+ * 
+ * Players meet in matches of a few games. Each player keeps their side for the
+ * whole match, and the starting player changes from game to game the way it
+ * does in TicTacToeGUI: the winner starts the next game, and a tie hands the
+ * start to the other side. In a round robin everyone meets everyone once, with
+ * sides alternating from round to round; all the matches are independent, so
+ * they are played at once. In a Swiss tournament each round pairs players with
+ * similar points who have not met yet, so a round starts once the one before it
+ * has finished. Matches run on the work-stealing threads of a fork-join pool,
+ * every match with players of its own, and ratings are updated as each game ends.
+ * 
+ * From the command line:
+ * java Tournament roundrobin|swiss[:rounds] gamesPerMatch size winLength player...,
+ * where a player is named as for the Simulator; the same player may be entered
+ * more than once.
+ * 
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ * 
+ */
+public class Tournament {
+    private final int size;
+    private final int winLength;
+    private final int gamesPerMatch;
+    private final Map<String, Supplier<? extends Player>> entrants;
+    private final ForkJoinPool pool;
+    
+    /**
+     * Constructs a tournament that runs on the common fork-join pool.
+     * @param entrants creates a player for each match, by entrant name, in seeding order
+     */
+    public Tournament(int size, int winLength, int gamesPerMatch, Map<String, Supplier<? extends Player>> entrants) {
+        this(size, winLength, gamesPerMatch, entrants, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Constructs a tournament that runs on the given fork-join pool.
+     */
+    public Tournament(int size, int winLength, int gamesPerMatch, Map<String, Supplier<? extends Player>> entrants,
+                      ForkJoinPool pool) {
+        if (entrants.size() < 2)
+            throw new IllegalArgumentException("A tournament needs at least two players");
+        if (gamesPerMatch < 1)
+            throw new IllegalArgumentException("A match needs at least one game: " + gamesPerMatch);
+        this.size = size;
+        this.winLength = winLength;
+        this.gamesPerMatch = gamesPerMatch;
+        this.entrants = new LinkedHashMap<>(entrants);
+        this.pool = pool;
+    }
+    
+    /**
+     * Plays a round robin and returns the results.
+     */
+    public RatedScoreboard roundRobin() {
+        RatedScoreboard scoreboard = newScoreboard();
+        List<Match> matches = new ArrayList<>();
+        for (List<String[]> round : roundRobinSchedule(new ArrayList<>(entrants.keySet()))) {
+            for (String[] pairing : round)
+                matches.add(new Match(pairing[0], pairing[1], scoreboard));
+        }
+        play(matches);
+        return scoreboard;
+    }
+    
+    /**
+     * Plays the given number of Swiss rounds and returns the results.
+     */
+    public RatedScoreboard swiss(int rounds) {
+        RatedScoreboard scoreboard = newScoreboard();
+        Set<String> played = new HashSet<>();
+        Set<String> hadBye = new HashSet<>();
+        for (int round = 0; round < rounds; round++) {
+            List<String[]> pairings = swissPairings(scoreboard, played, hadBye);
+            List<Match> matches = new ArrayList<>(pairings.size());
+            for (String[] pairing : pairings) {
+                if (pairing[1] == null) {
+                    scoreboard.recordBye(pairing[0], gamesPerMatch);
+                } else {
+                    // Alternate which of the two takes X from one round to the next.
+                    String[] sides = (round & 1) == 0 ? pairing : new String[] {pairing[1], pairing[0]};
+                    matches.add(new Match(sides[0], sides[1], scoreboard));
+                    played.add(pairKey(pairing[0], pairing[1]));
+                }
+            }
+            play(matches);
+        }
+        return scoreboard;
+    }
+    
+    /**
+     * Plays the given matches in parallel on the pool and waits for all of them.
+     */
+    private void play(List<Match> matches) {
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(matches);
+        }));
+    }
+    
+    /**
+     * Returns a scoreboard on which every entrant is ranked from the start.
+     */
+    private RatedScoreboard newScoreboard() {
+        RatedScoreboard scoreboard = new RatedScoreboard();
+        for (String name : entrants.keySet())
+            scoreboard.addPlayer(name);
+        return scoreboard;
+    }
+    
+    /**
+     * Returns the rounds of a round robin between the given players, each a list of
+     * {X, O} pairings, by the circle method: the first player stays put while the
+     * others rotate one place a round. With an odd number of players, whoever would
+     * meet the empty place sits the round out.
+     */
+    static List<List<String[]>> roundRobinSchedule(List<String> players) {
+        List<String> circle = new ArrayList<>(players);
+        if ((circle.size() & 1) == 1)
+            circle.add(null);
+        int n = circle.size();
+        List<List<String[]>> rounds = new ArrayList<>(n - 1);
+        for (int round = 0; round < n - 1; round++) {
+            List<String[]> pairings = new ArrayList<>(n / 2);
+            for (int i = 0; i < n / 2; i++) {
+                String home = circle.get(i);
+                String away = circle.get(n - 1 - i);
+                if (home == null || away == null)
+                    continue;
+                // Alternate sides so that nobody, the fixed player included, is always X.
+                pairings.add((round & 1) == 0 ? new String[] {home, away} : new String[] {away, home});
+            }
+            rounds.add(pairings);
+            circle.add(1, circle.remove(n - 1));
+        }
+        return rounds;
+    }
+    
+    /**
+     * Pairs the players for the next Swiss round: in order of points and then rating,
+     * each unpaired player meets the next one they have not met yet, or the next one
+     * at all if they have met everybody left. With an odd number of players, the lowest
+     * ranked player who has not had a bye sits out, paired with null.
+     */
+    private List<String[]> swissPairings(RatedScoreboard scoreboard, Set<String> played, Set<String> hadBye) {
+        List<String> order = new ArrayList<>();
+        for (RatedScoreboard.Ranking ranking : scoreboard.getRankings())
+            order.add(ranking.getName());
+        List<String[]> pairings = new ArrayList<>(order.size() / 2 + 1);
+        if ((order.size() & 1) == 1) {
+            String bye = order.get(order.size() - 1);
+            for (int i = order.size() - 1; i >= 0; i--) {
+                if (!hadBye.contains(order.get(i))) {
+                    bye = order.get(i);
+                    break;
+                }
+            }
+            order.remove(bye);
+            hadBye.add(bye);
+            pairings.add(new String[] {bye, null});
+        }
+        while (!order.isEmpty()) {
+            String first = order.remove(0);
+            int opponent = 0;
+            for (int i = 0; i < order.size(); i++) {
+                if (!played.contains(pairKey(first, order.get(i)))) {
+                    opponent = i;
+                    break;
+                }
+            }
+            pairings.add(new String[] {first, order.remove(opponent)});
+        }
+        return pairings;
+    }
+    
+    /**
+     * Returns a key for a pair of players that does not depend on their order.
+     */
+    private static String pairKey(String a, String b) {
+        return a.compareTo(b) < 0 ? a + '\n' + b : b + '\n' + a;
+    }
+    
+    /**
+     * The games between two entrants, played one after another on one pool thread.
+     */
+    private class Match extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String xName;
+        private final String oName;
+        private final RatedScoreboard scoreboard;
+        
+        Match(String xName, String oName, RatedScoreboard scoreboard) {
+            this.xName = xName;
+            this.oName = oName;
+            this.scoreboard = scoreboard;
+        }
+        
+        @Override
+        protected void compute() {
+            TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+            Player x = entrants.get(xName).get();
+            Player o = entrants.get(oName).get();
+            String startingPlayer = TicTacToeGame.PLAYER_X;
+            for (int i = 0; i < gamesPerMatch; i++) {
+                String winner = Simulator.playGame(game, startingPlayer, x, o);
+                scoreboard.recordGame(xName, oName, winner);
+                startingPlayer = TicTacToeGame.nextStartingPlayer(startingPlayer, winner);
+            }
+        }
+    }
+    
+    /**
+     * Runs a tournament from the command line and prints the ranked table.
+     */
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.err.println("Usage: java Tournament roundrobin|swiss[:rounds] gamesPerMatch size winLength"
+                               + " player player...");
+            return;
+        }
+        int games = Integer.parseInt(args[1]);
+        int size = Integer.parseInt(args[2]);
+        int winLength = Integer.parseInt(args[3]);
+        EvaluationCache table = new EvaluationCache(Solver.DEFAULT_TABLE_BITS);
+        Metrics.registerCache("tournament.solver", table);
+        Metrics.export();
+        Map<String, Supplier<? extends Player>> entrants = new LinkedHashMap<>();
+        for (int i = 4; i < args.length; i++) {
+            // Number repeated entries so that every entrant has a name of its own.
+            String name = entrants.containsKey(args[i]) ? args[i] + "#" + i : args[i];
+            entrants.put(name, Simulator.playersNamed(args[i], size, table));
+        }
+        
+        Tournament tournament = new Tournament(size, winLength, games, entrants);
+        long start = System.nanoTime();
+        RatedScoreboard scoreboard;
+        if (args[0].startsWith("swiss")) {
+            int rounds = args[0].contains(":") ? Integer.parseInt(args[0].substring(args[0].indexOf(':') + 1))
+                                               : 32 - Integer.numberOfLeadingZeros(entrants.size() - 1);
+            scoreboard = tournament.swiss(rounds);
+        } else {
+            scoreboard = tournament.roundRobin();
+        }
+        System.out.print(scoreboard.getTable());
+        System.out.printf("%d games in %.2f s on %d threads%n", scoreboard.getGamesPlayed(),
+                          (System.nanoTime() - start) / 1e9, tournament.pool.getParallelism());
+    }
+}
@@ -18,6 +18,9 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     public static final String EMPTY = " ";
     public static final String TIE = "T";
     
+    private final int size;
+    private final int winLength;
+    
     private String currentPlayer;
     private String winner;
     private int numFreeSquares;
@@ -26,19 +29,33 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     private JLabel statusLabel;
     
     public TicTacToeGUI() {
+        this(3, 3);
+    }
+    
+    /**
+     * Creates a size x size board where winLength marks in a row win.
+     *
+     * @param size the number of rows and columns
+     * @param winLength the number of marks in a row needed to win
+     */
+    public TicTacToeGUI(int size, int winLength) {
         super("Tic Tac Toe");
+        this.size = size;
+        this.winLength = winLength;
         currentPlayer = PLAYER_X;
         winner = EMPTY;
-        numFreeSquares = 9;
+        numFreeSquares = size * size;
         
         // Create board panel
-        JPanel boardPanel = new JPanel(new GridLayout(3, 3));
-        boardButtons = new JButton[3][3];
-        for (int row = 0; row < 3; row++) {
-            for (int col = 0; col < 3; col++) {
+        int cellSize = Math.max(8, Math.min(100, 700 / size));
+        JPanel boardPanel = new JPanel(new GridLayout(size, size));
+        boardButtons = new JButton[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
                 boardButtons[row][col] = new JButton(EMPTY);
-                boardButtons[row][col].setFont(new Font("Arial", Font.BOLD, 60));
-                boardButtons[row][col].setPreferredSize(new Dimension(100, 100)); // Ensures enough space for text
+                boardButtons[row][col].setFont(new Font("Arial", Font.BOLD, cellSize * 3 / 5));
+                boardButtons[row][col].setMargin(new Insets(0, 0, 0, 0));
+                boardButtons[row][col].setPreferredSize(new Dimension(cellSize, cellSize)); // Ensures enough space for text
                 boardButtons[row][col].addActionListener(this);
                 boardPanel.add(boardButtons[row][col]);
             }
@@ -95,8 +112,8 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
         
         // Determine which button was clicked.
         int row = -1, col = -1;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 if (boardButtons[i][j] == clicked) {
                     row = i;
                     col = j;
@@ -124,51 +141,57 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     }
     
     /**
-     * Checks whether the most recent move at (row, col) wins the game.
+     * Checks whether the most recent move at (row, col) wins the game by counting
+     * the current player's marks outward from the move along the row, the column,
+     * and both diagonals.
      *
      * @param row the row of the last move
      * @param col the column of the last move
      * @return true if the current player wins, false otherwise
      */
     private boolean haveWinner(int row, int col) {
-        String player = currentPlayer;
         // Check row.
-        if (boardButtons[row][0].getText().equals(player) &&
-            boardButtons[row][1].getText().equals(player) &&
-            boardButtons[row][2].getText().equals(player)) {
+        if (1 + countRun(row, col, 0, 1) + countRun(row, col, 0, -1) >= winLength) {
             return true;
         }
         // Check column.
-        if (boardButtons[0][col].getText().equals(player) &&
-            boardButtons[1][col].getText().equals(player) &&
-            boardButtons[2][col].getText().equals(player)) {
+        if (1 + countRun(row, col, 1, 0) + countRun(row, col, -1, 0) >= winLength) {
             return true;
         }
         // Check main diagonal.
-        if (row == col) {
-            if (boardButtons[0][0].getText().equals(player) &&
-                boardButtons[1][1].getText().equals(player) &&
-                boardButtons[2][2].getText().equals(player)) {
-                return true;
-            }
+        if (1 + countRun(row, col, 1, 1) + countRun(row, col, -1, -1) >= winLength) {
+            return true;
         }
         // Check anti-diagonal.
-        if (row + col == 2) {
-            if (boardButtons[0][2].getText().equals(player) &&
-                boardButtons[1][1].getText().equals(player) &&
-                boardButtons[2][0].getText().equals(player)) {
-                return true;
-            }
+        if (1 + countRun(row, col, 1, -1) + countRun(row, col, -1, 1) >= winLength) {
+            return true;
         }
         return false;
     }
     
+    /**
+     * Counts the current player's consecutive marks next to (row, col) in the
+     * direction (dRow, dCol), stopping after winLength - 1 marks.
+     */
+    private int countRun(int row, int col, int dRow, int dCol) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size
+                && boardButtons[r][c].getText().equals(currentPlayer)) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+    
     /**
      * Disables all board buttons to prevent further moves once the game is over.
      */
     private void disableAllButtons() {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 boardButtons[i][j].setEnabled(false);
             }
         }
@@ -180,9 +203,9 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     private void resetGame() {
         currentPlayer = PLAYER_X;
         winner = EMPTY;
-        numFreeSquares = 9;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
+        numFreeSquares = size * size;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 boardButtons[i][j].setText(EMPTY);
                 boardButtons[i][j].setEnabled(true);
             }
@@ -191,6 +214,10 @@ public class TicTacToeGUI extends JFrame implements ActionListener {
     }
     
     public static void main(String[] args) {
-        new TicTacToeGUI();
+        if (args.length >= 2) {
+            new TicTacToeGUI(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        } else {
+            new TicTacToeGUI();
+        }
     }
 }
@@ -0,0 +1,294 @@
+import bench.Workload;
+import bench.WorkloadFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * The workloads benchmarked by the jmh module, written against the game core.
+ * See bench.Workload for why they live in the default package.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+public class CoreWorkloads implements WorkloadFactory {
+    // Size of the transposition table used by solver benchmarks; it is cleared before every search.
+    private static final int SOLVER_TABLE_BITS = 12;
+    // Games stepped together by the batch benchmark; must match BatchBenchmark.GAMES.
+    private static final int BATCH_GAMES = 1024;
+    // Games lent from the pool at once by the pooled game benchmark, besides the one being played.
+    private static final int LIVE_GAMES = 4096;
+
+    @Override
+    public Workload create(String name, int size, int winLength, long seed) {
+        switch (name) {
+            case "makeMove":
+                return makeMove(size, winLength, seed);
+            case "checkWinner":
+                return checkWinner(size, winLength, seed);
+            case "getWinningCombination":
+                return getWinningCombination(size, winLength, seed);
+            case "initializeGame":
+                return initializeGame(size, winLength);
+            case "randomPlayout":
+                return randomPlayout(size, winLength, seed);
+            case "solverSearch":
+                return solverSearch(size, winLength, seed);
+            case "journalMove":
+                return journalMove(size, winLength, seed);
+            case "batchStep":
+                return batchStep(size, winLength, seed);
+            case "pooledGame":
+                return pooledGame(size, winLength, seed);
+            case "newGame":
+                return newGame(size, winLength, seed);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * Makes one move per call, following a random order of cells and starting a new
+     * game when the current one ends.
+     */
+    private static Workload makeMove(int size, int winLength, long seed) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        int[] order = shuffledCells(size, seed);
+        return new Workload() {
+            private int next;
+
+            @Override
+            public int run() {
+                if (game.isGameOver() || next == order.length) {
+                    game.initializeGame(TicTacToeGame.PLAYER_X);
+                    next = 0;
+                }
+                int cell = order[next++];
+                game.makeMove(cell / size, cell % size);
+                game.switchPlayer();
+                return game.getNumFreeSquares();
+            }
+        };
+    }
+
+    /**
+     * Tests one empty cell of a half-full board per call for a winning move; this runs
+     * the same outward count as the private checkWinner behind makeMove.
+     */
+    private static Workload checkWinner(int size, int winLength, long seed) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        int[] order = shuffledCells(size, seed);
+        int played = 0;
+        while (played < order.length / 2) {
+            int cell = order[played];
+            if (game.isWinningMove(cell / size, cell % size, game.getCurrentPlayer()))
+                break;
+            game.makeMove(cell / size, cell % size);
+            game.switchPlayer();
+            played++;
+        }
+        int[] empty = new int[order.length - played];
+        System.arraycopy(order, played, empty, 0, empty.length);
+        String player = game.getCurrentPlayer();
+        return new Workload() {
+            private int next;
+
+            @Override
+            public int run() {
+                int cell = empty[next];
+                next = next + 1 == empty.length ? 0 : next + 1;
+                return game.isWinningMove(cell / size, cell % size, player) ? 1 : 0;
+            }
+        };
+    }
+
+    /**
+     * Reads the winning line of a finished game.
+     */
+    private static Workload getWinningCombination(int size, int winLength, long seed) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        // Replay random games until one ends in a win rather than a tie.
+        for (long s = seed; game.getWinningCombination() == null; s++) {
+            game.initializeGame(TicTacToeGame.PLAYER_X);
+            for (int cell : shuffledCells(size, s)) {
+                game.makeMove(cell / size, cell % size);
+                if (game.isGameOver())
+                    break;
+                game.switchPlayer();
+            }
+        }
+        return () -> game.getWinningCombination().length;
+    }
+
+    /**
+     * Resets a game.
+     */
+    private static Workload initializeGame(int size, int winLength) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        return () -> {
+            game.initializeGame(TicTacToeGame.PLAYER_X);
+            return game.getNumFreeSquares();
+        };
+    }
+
+    /**
+     * Plays a whole game between two random players.
+     */
+    private static Workload randomPlayout(int size, int winLength, long seed) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        Player x = new RandomPlayer(seed);
+        Player o = new RandomPlayer(seed + 1);
+        return () -> {
+            Simulator.playGame(game, TicTacToeGame.PLAYER_X, x, o);
+            return game.getNumFreeSquares();
+        };
+    }
+
+    /**
+     * Searches a position with an empty transposition table: the whole game tree on
+     * 3x3, and two plies on larger boards, after a few opening moves near the centre.
+     */
+    private static Workload solverSearch(int size, int winLength, long seed) {
+        TicTacToeGame game = new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X);
+        Solver solver = new Solver(size, winLength, SOLVER_TABLE_BITS);
+        int depth = size == TicTacToeGame.DEFAULT_SIZE ? size * size : 2;
+        if (size > TicTacToeGame.DEFAULT_SIZE) {
+            SplittableRandom random = new SplittableRandom(seed);
+            int middle = size / 2;
+            for (int i = 0; i < 4; i++) {
+                int row = middle + random.nextInt(-2, 3);
+                int col = middle + random.nextInt(-2, 3);
+                if (game.makeMove(row, col))
+                    game.switchPlayer();
+            }
+        }
+        return () -> {
+            solver.clear();
+            return solver.findBestMove(game, depth, 0);
+        };
+    }
+
+    /**
+     * Appends one move per call to a journal in a temporary file, starting a new game
+     * after every size * size moves. The journal writes and syncs in the background.
+     */
+    private static Workload journalMove(int size, int winLength, long seed) {
+        GameJournal journal;
+        try {
+            Path file = Files.createTempFile("bench", ".journal");
+            file.toFile().deleteOnExit();
+            journal = new GameJournal(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int[] order = shuffledCells(size, seed);
+        return new Workload() {
+            private long gameId = -1;
+            private int next = order.length;
+
+            @Override
+            public int run() {
+                if (next == order.length) {
+                    if (gameId >= 0)
+                        journal.gameOver(gameId, TicTacToeGame.TIE);
+                    gameId = journal.startGame(size, winLength, TicTacToeGame.PLAYER_X, "X", "O");
+                    next = 0;
+                }
+                int cell = order[next++];
+                journal.move(gameId, cell / size, cell % size);
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Makes one random move in each of BATCH_GAMES games held in a BoardBatch, restarting
+     * the games that have ended first.
+     */
+    private static Workload batchStep(int size, int winLength, long seed) {
+        BoardBatch batch = new BoardBatch(BATCH_GAMES, size, winLength);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] moves = new int[BATCH_GAMES];
+        return () -> {
+            batch.resetFinished(TicTacToeGame.PLAYER_X);
+            batch.randomMoves(random, moves);
+            return batch.applyMoves(moves);
+        };
+    }
+
+    /**
+     * Plays a whole game per call on a game lent by a GamePool, as a server match does,
+     * with LIVE_GAMES other games lent at the same time; the game lent LIVE_GAMES calls
+     * ago is returned first. Once the pool is warm, a call should allocate nothing.
+     */
+    private static Workload pooledGame(int size, int winLength, long seed) {
+        GamePool pool = new GamePool(size, winLength);
+        int[] order = shuffledCells(size, seed);
+        TicTacToeGame[] live = new TicTacToeGame[LIVE_GAMES];
+        for (int i = 0; i < live.length; i++)
+            live[i] = pool.acquire(TicTacToeGame.PLAYER_X);
+        return new Workload() {
+            private int next;
+            private int games;
+
+            @Override
+            public int run() {
+                pool.release(live[next]);
+                TicTacToeGame game = pool.acquire(TicTacToeGame.PLAYER_X);
+                live[next] = game;
+                next = next + 1 == live.length ? 0 : next + 1;
+                return play(game, order, games++);
+            }
+        };
+    }
+
+    /**
+     * Plays a whole game per call on a new TicTacToeGame, the cost pooledGame saves.
+     */
+    private static Workload newGame(int size, int winLength, long seed) {
+        int[] order = shuffledCells(size, seed);
+        return new Workload() {
+            private int games;
+
+            @Override
+            public int run() {
+                return play(new TicTacToeGame(size, winLength, TicTacToeGame.PLAYER_X), order, games++);
+            }
+        };
+    }
+
+    /**
+     * Plays the cells of order, starting at a different one for every game number, until
+     * the game ends, and returns the number of free squares left.
+     */
+    private static int play(TicTacToeGame game, int[] order, int gameNumber) {
+        int size = game.getSize();
+        int start = gameNumber % order.length;
+        for (int i = 0; !game.isGameOver(); i++) {
+            int cell = order[(start + i) % order.length];
+            game.makeMove(cell / size, cell % size);
+            if (!game.isGameOver())
+                game.switchPlayer();
+        }
+        return game.getNumFreeSquares();
+    }
+
+    /**
+     * Returns every cell index of a size x size board in a random order.
+     */
+    private static int[] shuffledCells(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] cells = new int[size * size];
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = i;
+        for (int i = cells.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = cells[i];
+            cells[i] = cells[j];
+            cells[j] = t;
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks stepping many games in lockstep with a BoardBatch: choosing a random
+ * move, placing it and checking for a win or draw in every game. Reported per game
+ * moved, so it compares directly with GameBenchmark.makeMove.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    // Games in the batch; must match the batchStep workload.
+    static final int GAMES = 1024;
+
+    // Board size and win length, as size:winLength; boards are at most 8x8.
+    @Param({"3:3", "8:5"})
+    public String board;
+
+    @Param("42")
+    public long seed;
+
+    private Workload step;
+
+    @Setup
+    public void setUp() {
+        int size = Integer.parseInt(board.substring(0, board.indexOf(':')));
+        int winLength = Integer.parseInt(board.substring(board.indexOf(':') + 1));
+        step = WorkloadFactory.load().create("batchStep", size, winLength, seed);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int step() {
+        return step.run();
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the TicTacToeGame operations on the hot path of every game, across
+ * board sizes. Run with -prof gc to see allocation per operation.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    // Board size and win length, as size:winLength.
+    @Param({"3:3", "15:5", "100:5"})
+    public String board;
+
+    @Param("42")
+    public long seed;
+
+    private Workload makeMove;
+    private Workload checkWinner;
+    private Workload getWinningCombination;
+    private Workload initializeGame;
+    private Workload randomPlayout;
+
+    @Setup
+    public void setUp() {
+        int size = Integer.parseInt(board.substring(0, board.indexOf(':')));
+        int winLength = Integer.parseInt(board.substring(board.indexOf(':') + 1));
+        WorkloadFactory factory = WorkloadFactory.load();
+        makeMove = factory.create("makeMove", size, winLength, seed);
+        checkWinner = factory.create("checkWinner", size, winLength, seed);
+        getWinningCombination = factory.create("getWinningCombination", size, winLength, seed);
+        initializeGame = factory.create("initializeGame", size, winLength, seed);
+        randomPlayout = factory.create("randomPlayout", size, winLength, seed);
+    }
+
+    @Benchmark
+    public int makeMove() {
+        return makeMove.run();
+    }
+
+    @Benchmark
+    public int checkWinner() {
+        return checkWinner.run();
+    }
+
+    @Benchmark
+    public int getWinningCombination() {
+        return getWinningCombination.run();
+    }
+
+    @Benchmark
+    public int initializeGame() {
+        return initializeGame.run();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int randomPlayout() {
+        return randomPlayout.run();
+    }
+}
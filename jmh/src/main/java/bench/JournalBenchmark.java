@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks appending moves to a GameJournal, including the background writes and
+ * fsyncs they cause. Reported in moves per second.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    // Board size and win length, as size:winLength.
+    @Param({"3:3", "15:5"})
+    public String board;
+
+    @Param("42")
+    public long seed;
+
+    private Workload move;
+
+    @Setup
+    public void setUp() {
+        int size = Integer.parseInt(board.substring(0, board.indexOf(':')));
+        int winLength = Integer.parseInt(board.substring(board.indexOf(':') + 1));
+        move = WorkloadFactory.load().create("journalMove", size, winLength, seed);
+    }
+
+    @Benchmark
+    public int move() {
+        return move.run();
+    }
+}
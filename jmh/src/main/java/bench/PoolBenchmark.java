@@ -0,0 +1,87 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks playing whole games on games lent by a GamePool, as the server does,
+ * against creating a new game for each. Run with -prof gc to see the allocation
+ * per game.
+ *
+ * The pooled benchmark also checks the pool's promise itself: every iteration
+ * measures the bytes its thread allocated, and fails the run if a pooled game
+ * allocated more than MAX_POOLED_BYTES on average once the pool was warm.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+    // Bytes a pooled game may allocate on average; iterations also allocate a little of their own.
+    public static final double MAX_POOLED_BYTES = 1;
+
+    // Board size and win length, as size:winLength.
+    @Param({"3:3", "15:5"})
+    public String board;
+
+    @Param({"pooledGame", "newGame"})
+    public String workload;
+
+    @Param("42")
+    public long seed;
+
+    private Workload game;
+    private com.sun.management.ThreadMXBean threads;
+    private long games;
+    private long allocatedBefore;
+    private int iterations;
+
+    @Setup
+    public void setUp() {
+        int size = Integer.parseInt(board.substring(0, board.indexOf(':')));
+        int winLength = Integer.parseInt(board.substring(board.indexOf(':') + 1));
+        game = WorkloadFactory.load().create(workload, size, winLength, seed);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        games = 0;
+        allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Fails the run if pooled games allocated, except in the first warmup iteration, while
+     * the code is still being compiled.
+     */
+    @TearDown(Level.Iteration)
+    public void checkAllocation() {
+        double perGame = (double) (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / games;
+        if (iterations++ > 0 && workload.equals("pooledGame") && perGame > MAX_POOLED_BYTES)
+            throw new IllegalStateException(String.format("Pooled games allocated %.1f bytes each", perGame));
+    }
+
+    @Benchmark
+    public int game() {
+        games++;
+        return game.run();
+    }
+}
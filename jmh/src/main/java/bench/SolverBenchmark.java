@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Solver searches from an empty transposition table: the full game
+ * tree on 3x3 and a fixed-depth search on larger boards.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    // Board size and win length, as size:winLength.
+    @Param({"3:3", "15:5"})
+    public String board;
+
+    @Param("42")
+    public long seed;
+
+    private Workload search;
+
+    @Setup
+    public void setUp() {
+        int size = Integer.parseInt(board.substring(0, board.indexOf(':')));
+        int winLength = Integer.parseInt(board.substring(board.indexOf(':') + 1));
+        search = WorkloadFactory.load().create("solverSearch", size, winLength, seed);
+    }
+
+    @Benchmark
+    public int search() {
+        return search.run();
+    }
+}
@@ -0,0 +1,22 @@
+package bench;
+
+/**
+ * One operation on the game core, repeated by a benchmark.
+ *
+ * The game core lives in the default package, which named packages cannot
+ * import, and JMH does not accept benchmarks in the default package. The
+ * benchmarks therefore reach the core through this interface, implemented by
+ * the CoreWorkloads class in the default package. Each benchmark fork sees a
+ * single implementation, so the JIT inlines the call.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+public interface Workload {
+
+    /**
+     * Performs the operation once and returns a value the benchmark consumes so that
+     * the work cannot be optimised away.
+     */
+    int run();
+}
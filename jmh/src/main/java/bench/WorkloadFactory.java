@@ -0,0 +1,29 @@
+package bench;
+
+import java.util.ServiceLoader;
+
+/**
+ * Creates workloads on the game core by name. The implementation is found with
+ * ServiceLoader.
+ *
+ * @author Dumany Lombe
+ * @version Student Number: 101316658
+ */
+public interface WorkloadFactory {
+
+    /**
+     * Creates the named workload for size x size boards where winLength marks in a
+     * row win. Workloads with the same seed repeat the same moves.
+     *
+     * @throws IllegalArgumentException if there is no workload with that name.
+     */
+    Workload create(String name, int size, int winLength, long seed);
+
+    /**
+     * Returns the factory provided by the core workloads.
+     */
+    static WorkloadFactory load() {
+        return ServiceLoader.load(WorkloadFactory.class).findFirst()
+                .orElseThrow(() -> new IllegalStateException("No WorkloadFactory on the class path"));
+    }
+}